@@ -0,0 +1,170 @@
+package com.example.loadtest;
+
+import io.socket.client.Ack;
+import io.socket.client.IO;
+import io.socket.client.Socket;
+import io.socket.engineio.client.transports.WebSocket;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 压测的模拟客户端进程
+ * <p>
+ * 由LoadTestMain在单独的JVM里启动,模拟客户端的对象和每个连接的OkHttp线程不会算进服务端进程的堆内存.
+ * 与父进程通过标准输入输出按行通信:
+ * 建连结束后输出"CONNECTED 连接失败数 建连耗时ms",等标准输入读到START后开始发送,
+ * 发送阶段结束后输出"RESULT 已发送 已应答 发送阶段内应答"和以REPORT开头的延迟报告行.
+ * <p>
+ * 参数: 端口 会话数 每会话每秒发送数 发送秒数
+ */
+public class ClientFleet {
+
+    static final String CONNECTED = "CONNECTED";
+    static final String START = "START";
+    static final String RESULT = "RESULT";
+    static final String REPORT = "REPORT ";
+
+    private static final int SAMPLE_CAPACITY = 1_000_000;
+
+    /**
+     * 所有会话共用的OkHttpClient.每个打开的websocket会一直占用Dispatcher的一个请求名额,
+     * 默认的maxRequests=64会让第64个之后的会话全部建连超时
+     */
+    private static final OkHttpClient HTTP_CLIENT = newHttpClient();
+
+    public static void main(String[] args) throws Exception {
+        int port = Integer.parseInt(args[0]);
+        int sessions = Integer.parseInt(args[1]);
+        double rate = Double.parseDouble(args[2]);
+        int duration = Integer.parseInt(args[3]);
+        //父进程按UTF-8读取
+        PrintStream out = new PrintStream(new FileOutputStream(FileDescriptor.out), true, "UTF-8");
+
+        LatencyRecorder ackLatency = new LatencyRecorder("ack延迟", SAMPLE_CAPACITY);
+        LatencyRecorder broadcastLatency = new LatencyRecorder("广播到达延迟", SAMPLE_CAPACITY);
+        AtomicLong sent = new AtomicLong();
+        AtomicLong connectFailed = new AtomicLong();
+
+        //建立会话
+        long connectStart = System.nanoTime();
+        CountDownLatch connected = new CountDownLatch(sessions);
+        List<Socket> sockets = new ArrayList<>(sessions);
+        for (int i = 0; i < sessions; i++) {
+            Socket socket = newSocket("http://127.0.0.1:" + port, "loadtest-" + i, broadcastLatency);
+            socket.once(Socket.EVENT_CONNECT, a -> connected.countDown());
+            socket.once(Socket.EVENT_CONNECT_ERROR, a -> {
+                connectFailed.incrementAndGet();
+                connected.countDown();
+            });
+            socket.connect();
+            sockets.add(socket);
+        }
+        connected.await(Math.max(30, sessions / 100), TimeUnit.SECONDS);
+        long connectMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connectStart);
+        out.println(CONNECTED + " " + connectFailed.get() + " " + connectMillis);
+
+        //父进程测完建连后的堆内存再开始发送
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = in.readLine()) != null && !line.equals(START)) {
+            //忽略其他输入
+        }
+        if (line == null) {
+            System.exit(1);
+        }
+
+        //发送阶段
+        ScheduledExecutorService driver = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors());
+        long periodMicros = (long) (1_000_000 / rate);
+        for (int i = 0; i < sockets.size(); i++) {
+            Socket socket = sockets.get(i);
+            //错开每个会话的首次发送,避免所有会话同一时刻发包
+            long initialDelay = periodMicros * i / sockets.size();
+            driver.scheduleAtFixedRate(() -> {
+                if (!socket.connected()) {
+                    return;
+                }
+                long start = System.nanoTime();
+                sent.incrementAndGet();
+                socket.emit("ServerReceive", newMessage(socket.id()),
+                        (Ack) a -> ackLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start)));
+            }, initialDelay, periodMicros, TimeUnit.MICROSECONDS);
+        }
+        TimeUnit.SECONDS.sleep(duration);
+        driver.shutdownNow();
+        //吞吐只统计发送阶段内收到的ack,不含下面等待在途ack的时间
+        long ackedInWindow = ackLatency.getTotal();
+        //留时间给在途的ack
+        TimeUnit.SECONDS.sleep(2);
+
+        out.println(RESULT + " " + sent.get() + " " + ackLatency.getTotal() + " " + ackedInWindow);
+        out.println(REPORT + ackLatency.report("us"));
+        out.println(REPORT + broadcastLatency.report("ms"));
+
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        System.exit(0);
+    }
+
+    private static Socket newSocket(String uri, String uid, LatencyRecorder broadcastLatency) throws Exception {
+        IO.Options options = new IO.Options();
+        options.forceNew = true;
+        options.reconnection = false;
+        options.transports = new String[]{WebSocket.NAME};
+        options.query = "UID=" + uid;
+        options.webSocketFactory = HTTP_CLIENT;
+        options.callFactory = HTTP_CLIENT;
+        Socket socket = IO.socket(uri, options);
+        //广播的第二个参数是服务端开始广播时的System.currentTimeMillis,同机的两个进程时钟一致
+        socket.on("Broadcast", a -> {
+            if (a.length > 1 && a[1] instanceof Number) {
+                broadcastLatency.record(System.currentTimeMillis() - ((Number) a[1]).longValue());
+            }
+        });
+        //服务端的sendMessaged需要客户端应答
+        socket.on("sendMessaged", a -> {
+            if (a.length > 0 && a[a.length - 1] instanceof Ack) {
+                ((Ack) a[a.length - 1]).call(newMessage(uid));
+            }
+        });
+        return socket;
+    }
+
+    private static OkHttpClient newHttpClient() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(Integer.MAX_VALUE);
+        dispatcher.setMaxRequestsPerHost(Integer.MAX_VALUE);
+        return new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .readTimeout(1, TimeUnit.MINUTES)
+                .build();
+    }
+
+    private static JSONObject newMessage(String name) {
+        JSONObject message = new JSONObject();
+        try {
+            message.put("name", name);
+            message.put("message", "loadtest");
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+        return message;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 延迟采样记录器
+ * <p>
+ * 预分配固定容量的数组,超出容量的样本只计数不保存,避免压测过程中记录器自身产生GC压力
+ */
+public class LatencyRecorder {
+    private final String name;
+    private final long[] samples;
+    private final AtomicInteger index = new AtomicInteger();
+    private final AtomicLong total = new AtomicLong();
+
+    public LatencyRecorder(String name, int capacity) {
+        this.name = name;
+        this.samples = new long[capacity];
+    }
+
+    public void record(long value) {
+        total.incrementAndGet();
+        int i = index.getAndIncrement();
+        if (i < samples.length) {
+            samples[i] = value;
+        }
+    }
+
+    public long getTotal() {
+        return total.get();
+    }
+
+    /**
+     * @param unit 报告中数值的单位,如"us"、"ms"
+     * @return 一行报告文本
+     */
+    public String report(String unit) {
+        int count = Math.min(index.get(), samples.length);
+        if (count == 0) {
+            return name + ": 无样本";
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        return String.format("%s: 样本=%d(总数=%d) p50=%d%s p90=%d%s p99=%d%s p999=%d%s max=%d%s",
+                name, count, total.get(),
+                percentile(sorted, 50), unit,
+                percentile(sorted, 90), unit,
+                percentile(sorted, 99), unit,
+                percentile(sorted, 99.9), unit,
+                sorted[count - 1], unit);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int i = (int) Math.ceil(p / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(i, sorted.length - 1))];
+    }
+}
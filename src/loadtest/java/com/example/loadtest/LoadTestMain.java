@@ -0,0 +1,199 @@
+package com.example.loadtest;
+
+import com.example.MessageEventHandler;
+import com.example.NettySocketioApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.ServerSocket;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本机压测入口
+ * <p>
+ * 在本进程里启动NettySocketioApplication(绑定127.0.0.1的空闲端口),
+ * 再在单独的JVM里启动{@link ClientFleet}模拟N个会话,按固定速率发送ServerReceive事件,本进程同时定时触发广播,
+ * 最后把ack延迟、广播到达延迟、服务端每会话堆内存和吞吐写入报告文件.
+ * 客户端不在本进程中,测得的堆内存只包含服务端为会话分配的对象.
+ * <p>
+ * 参数(key=value):
+ * sessions      会话数,默认100
+ * rate          每个会话每秒发送的ServerReceive数,默认1
+ * duration      发送阶段持续秒数,默认30
+ * broadcast     广播间隔毫秒,默认1000,0表示不广播
+ * report        报告文件路径,默认target/loadtest-report.txt
+ */
+@Slf4j
+public class LoadTestMain {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> params = parseArgs(args);
+        int sessions = Integer.parseInt(params.getOrDefault("sessions", "100"));
+        double rate = Double.parseDouble(params.getOrDefault("rate", "1"));
+        int duration = Integer.parseInt(params.getOrDefault("duration", "30"));
+        long broadcastInterval = Long.parseLong(params.getOrDefault("broadcast", "1000"));
+        Path reportPath = Paths.get(params.getOrDefault("report", "target/loadtest-report.txt"));
+
+        int port = findFreePort();
+        ConfigurableApplicationContext context = SpringApplication.run(NettySocketioApplication.class,
+                "--socketio.hostname=127.0.0.1",
+                "--socketio.port=" + port,
+                "--server.port=0",
+                "--logging.level.com.example=WARN");
+        MessageEventHandler handler = context.getBean(MessageEventHandler.class);
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long heapBefore = usedHeapAfterGc(memory);
+
+        //建立会话
+        Process fleet = startClientFleet(port, sessions, rate, duration);
+        BufferedReader fleetOut = new BufferedReader(new InputStreamReader(fleet.getInputStream(), StandardCharsets.UTF_8));
+        PrintWriter fleetIn = new PrintWriter(new OutputStreamWriter(fleet.getOutputStream(), StandardCharsets.UTF_8), true);
+        String[] connected = readLine(fleetOut, ClientFleet.CONNECTED).split(" ");
+        //等待服务端onConnect全部处理完
+        TimeUnit.SECONDS.sleep(2);
+        long heapAfter = usedHeapAfterGc(memory);
+        int online = MessageEventHandler.socketIOClientMap.size();
+
+        //发送阶段
+        fleetIn.println(ClientFleet.START);
+        ScheduledExecutorService broadcaster = Executors.newSingleThreadScheduledExecutor();
+        if (broadcastInterval > 0) {
+            broadcaster.scheduleAtFixedRate(handler::sendBroadcast, broadcastInterval, broadcastInterval, TimeUnit.MILLISECONDS);
+        }
+        TimeUnit.SECONDS.sleep(duration);
+        broadcaster.shutdownNow();
+
+        String[] result = readLine(fleetOut, ClientFleet.RESULT).split(" ");
+        List<String> latencyReports = new ArrayList<>();
+        String line;
+        while ((line = fleetOut.readLine()) != null) {
+            if (line.startsWith(ClientFleet.REPORT)) {
+                latencyReports.add(line.substring(ClientFleet.REPORT.length()));
+            }
+        }
+        fleet.waitFor();
+
+        List<String> lines = new ArrayList<>();
+        lines.add("会话数: 目标=" + sessions + " 服务端在线=" + online + " 连接失败=" + connected[1] + " 建连耗时=" + connected[2] + "ms");
+        long ackedInWindow = Long.parseLong(result[3]);
+        lines.add("发送: 速率=" + rate + "/s/会话 持续=" + duration + "s 已发送=" + result[1]
+                + " 已应答=" + result[2]
+                + " 吞吐=" + (ackedInWindow / Math.max(1, duration)) + " msg/s");
+        lines.addAll(latencyReports);
+        lines.add("服务端堆内存: 建连前=" + heapBefore / 1024 + "KB 建连后=" + heapAfter / 1024 + "KB 每会话="
+                + (online == 0 ? 0 : (heapAfter - heapBefore) / online) + "B");
+        writeReport(reportPath, lines);
+
+        SpringApplication.exit(context);
+        System.exit(0);
+    }
+
+    /**
+     * 用当前JVM和当前类路径启动客户端进程,标准错误直接输出到本进程
+     */
+    private static Process startClientFleet(int port, int sessions, double rate, int duration) throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        ProcessBuilder builder = new ProcessBuilder(java, "-cp", classpath(), ClientFleet.class.getName(),
+                String.valueOf(port), String.valueOf(sessions), String.valueOf(rate), String.valueOf(duration));
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        Process process = builder.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(process::destroy));
+        return process;
+    }
+
+    /**
+     * exec:java在Maven进程里用单独的ClassLoader运行本类,java.class.path不是项目的类路径,需要从ClassLoader中取
+     */
+    private static String classpath() {
+        Set<String> entries = new LinkedHashSet<>();
+        for (ClassLoader loader = LoadTestMain.class.getClassLoader(); loader != null; loader = loader.getParent()) {
+            if (loader instanceof URLClassLoader) {
+                for (URL url : ((URLClassLoader) loader).getURLs()) {
+                    try {
+                        entries.add(Paths.get(url.toURI()).toString());
+                    } catch (URISyntaxException | IllegalArgumentException e) {
+                        log.warn("忽略无法转换的类路径:" + url);
+                    }
+                }
+            }
+        }
+        entries.add(System.getProperty("java.class.path"));
+        return String.join(File.pathSeparator, entries);
+    }
+
+    /**
+     * 读到以prefix开头的一行,客户端进程提前退出时抛出异常
+     */
+    private static String readLine(BufferedReader reader, String prefix) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith(prefix)) {
+                return line;
+            }
+        }
+        throw new IllegalStateException("客户端进程已退出,未输出" + prefix);
+    }
+
+    private static long usedHeapAfterGc(MemoryMXBean memory) throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            TimeUnit.MILLISECONDS.sleep(200);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static int findFreePort() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            return serverSocket.getLocalPort();
+        }
+    }
+
+    private static void writeReport(Path path, List<String> lines) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+            for (String line : lines) {
+                writer.println(line);
+                log.warn(line);
+            }
+        }
+        log.warn("压测报告已写入:" + path.toAbsolutePath());
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> params = new HashMap<>();
+        for (String arg : args) {
+            int i = arg.indexOf('=');
+            if (i > 0) {
+                params.put(arg.substring(0, i), arg.substring(i + 1));
+            }
+        }
+        return params;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example;
+
+import com.corundumstudio.socketio.SocketIOClient;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个客户端会话的事件批量发送器
+ * <p>
+ * client.sendEvent每调用一次就是一帧、一次flush,高频小事件(如行情推送)时系统调用和帧开销占大头.
+ * 通过add()累积事件,在达到maxSize条或距第一条事件超过maxDelayMillis时,
+ * 合并成一个BATCH_EVENT事件一次性发出(一帧、一次flush),批内顺序与add()顺序一致.
+ * <p>
+ * 客户端需监听BATCH_EVENT事件,其数据为数组,每个元素为[事件名, 参数1, 参数2...],按顺序逐个分发即可
+ */
+@Slf4j
+public class EventBatch {
+
+    /**
+     * 批量事件在客户端监听的事件名
+     */
+    public static final String BATCH_EVENT = "EventBatch";
+
+    private final SocketIOClient client;
+    private final ScheduledExecutorService scheduler;
+    private final int maxSize;
+    private final long maxDelayMillis;
+
+    private List<List<Object>> pending;
+    private ScheduledFuture<?> flushTask;
+    private boolean closed = false;
+
+    /**
+     * @param client         要发送的客户端
+     * @param scheduler      用于在延迟上限到达时触发flush
+     * @param maxSize        批内事件数达到该值时立即发送
+     * @param maxDelayMillis 批内第一条事件最多等待的毫秒数(延迟上限)
+     */
+    public EventBatch(SocketIOClient client, ScheduledExecutorService scheduler, int maxSize, long maxDelayMillis) {
+        checkConfig(maxSize, maxDelayMillis);
+        this.client = client;
+        this.scheduler = scheduler;
+        this.maxSize = maxSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.pending = new ArrayList<>(maxSize);
+    }
+
+    /**
+     * 校验批量参数,启动时调用一次,避免错误配置在每次onConnect时才抛异常
+     *
+     * @throws IllegalArgumentException maxSize小于1或maxDelayMillis小于0
+     */
+    public static void checkConfig(int maxSize, long maxDelayMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("socketio.batch.max-size必须大于0,当前值:" + maxSize);
+        }
+        if (maxDelayMillis < 0) {
+            throw new IllegalArgumentException("socketio.batch.max-delay-millis不能小于0,当前值:" + maxDelayMillis);
+        }
+    }
+
+    /**
+     * 添加一个事件到批中,用法与client.sendEvent(name, data...)相同
+     *
+     * @return 批已关闭(客户端已断开)时返回false,事件未被接收
+     */
+    public synchronized boolean add(String name, Object... data) {
+        if (closed) {
+            return false;
+        }
+        List<Object> event = new ArrayList<>(data.length + 1);
+        event.add(name);
+        event.addAll(Arrays.asList(data));
+        pending.add(event);
+
+        if (pending.size() >= maxSize) {
+            flush();
+        } else if (flushTask == null) {
+            flushTask = scheduler.schedule(this::flush, maxDelayMillis, TimeUnit.MILLISECONDS);
+        }
+        return true;
+    }
+
+    /**
+     * 立即发送批中所有未发送的事件
+     * <p>
+     * 发送在锁内进行,保证先取出的批一定先进入客户端的发送队列,批与批之间不会乱序
+     */
+    public synchronized void flush() {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<List<Object>> batch = pending;
+        pending = new ArrayList<>(maxSize);
+        send(batch);
+    }
+
+    /**
+     * 发送剩余事件并停止接收新事件,客户端断开时调用
+     */
+    public synchronized void close() {
+        flush();
+        closed = true;
+    }
+
+    public SocketIOClient getClient() {
+        return client;
+    }
+
+    private void send(List<List<Object>> batch) {
+        if (!client.isChannelOpen()) {
+            log.info("客户端:" + client.getSessionId() + "已断开,丢弃" + batch.size() + "条批量事件");
+            return;
+        }
+        client.sendEvent(BATCH_EVENT, batch);
+    }
+}
@@ -0,0 +1,28 @@
+package com.example;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * 查看按事件名的payload大小上限拒绝情况
+ */
+@RestController
+@RequestMapping("/event-size-limit")
+public class EventSizeLimitController {
+
+    @Autowired
+    private EventSizeLimits eventSizeLimits;
+
+    /**
+     * 各事件被拒绝的累计次数,只有单独配置了上限的事件名单独计数,
+     * 其余事件记在&lt;default&gt;下,无法确定事件名的记在&lt;unknown&gt;下,不是事件包的记在&lt;non-event&gt;下
+     */
+    @GetMapping("/rejected")
+    public Map<String, Long> rejected() {
+        return eventSizeLimits.getRejectedCounts();
+    }
+}
@@ -0,0 +1,171 @@
+package com.example;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.util.ReferenceCountUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 在websocket分片聚合、socket.io解码之前按事件名检查payload大小
+ * <p>
+ * 位于websocket帧解码器之后、WebSocketFrameAggregator之前,每个连接一个实例.
+ * 从第一个文本分片的开头解析出事件名(42["事件名",...]),是事件包但解析不出事件名时按最小的上限检查,
+ * 分片累计超过该事件的上限时立即丢弃已缓存的分片和后续分片,超限的消息不会被完整缓存,更不会被解码.
+ * 单帧的上限由netty的maxFramePayloadLength(取所有上限的最大值)在读到帧头时保证.
+ * 这里看到的必须是未压缩的帧,所以websocket压缩已在NettySocketioConfig中关闭.
+ * 完整的文本消息交给下游时通知MessageTracer记录收帧时间,下游处理返回后清除.
+ */
+public class EventSizeLimitHandler extends ChannelInboundHandlerAdapter {
+
+    /**
+     * 解析事件名时最多查看的字节数
+     */
+    private static final int NAME_SCAN_LIMIT = 256;
+
+    private final EventSizeLimits limits;
+    private final MessageTracer tracer;
+
+    private final List<Object> pending = new ArrayList<>();
+    private String pendingName;
+    private long pendingSize;
+    private boolean discarding = false;
+
+    public EventSizeLimitHandler(EventSizeLimits limits, MessageTracer tracer) {
+        this.limits = limits;
+        this.tracer = tracer;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof TextWebSocketFrame) {
+            TextWebSocketFrame frame = (TextWebSocketFrame) msg;
+            //新的消息开始,上一条未结束的分片(如有)视为丢失
+            releasePending();
+            discarding = false;
+
+            String name = parseEventName(frame.content());
+            long size = frame.content().readableBytes();
+            if (size > limits.limitOf(name)) {
+                limits.reject(name, size);
+                frame.release();
+                discarding = !frame.isFinalFragment();
+                return;
+            }
+            if (frame.isFinalFragment()) {
+                tracer.onReceive();
+                try {
+                    ctx.fireChannelRead(frame);
+                } finally {
+                    tracer.clearReceive();
+                }
+                return;
+            }
+            pending.add(frame);
+            pendingName = name;
+            pendingSize = size;
+            return;
+        }
+
+        if (msg instanceof ContinuationWebSocketFrame) {
+            ContinuationWebSocketFrame frame = (ContinuationWebSocketFrame) msg;
+            if (discarding) {
+                frame.release();
+                discarding = !frame.isFinalFragment();
+                return;
+            }
+            if (pending.isEmpty()) {
+                //二进制消息的分片,不做检查
+                ctx.fireChannelRead(frame);
+                return;
+            }
+            pendingSize += frame.content().readableBytes();
+            if (pendingSize > limits.limitOf(pendingName)) {
+                limits.reject(pendingName, pendingSize);
+                releasePending();
+                frame.release();
+                discarding = !frame.isFinalFragment();
+                return;
+            }
+            pending.add(frame);
+            if (frame.isFinalFragment()) {
+                tracer.onReceive();
+                try {
+                    for (Object fragment : pending) {
+                        ctx.fireChannelRead(fragment);
+                    }
+                } finally {
+                    tracer.clearReceive();
+                }
+                pending.clear();
+            }
+            return;
+        }
+
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        releasePending();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        releasePending();
+        super.channelInactive(ctx);
+    }
+
+    private void releasePending() {
+        for (Object fragment : pending) {
+            ReferenceCountUtil.release(fragment);
+        }
+        pending.clear();
+        pendingName = null;
+        pendingSize = 0;
+    }
+
+    /**
+     * 从socket.io事件包开头解析事件名,不复制整个payload
+     * <p>
+     * 格式: 4 2 [附件数-] [/namespace,] [ackId] ["事件名", ...]
+     * 4是engine.io的message,2是socket.io的EVENT,5是BINARY_EVENT
+     *
+     * @return 事件名;不是事件包时返回null;是事件包但名字不完整、含转义或超出扫描范围时返回{@link EventSizeLimits#UNKNOWN_EVENT}
+     */
+    static String parseEventName(ByteBuf content) {
+        int start = content.readerIndex();
+        int end = start + Math.min(content.readableBytes(), NAME_SCAN_LIMIT);
+        if (end - start < 2) {
+            //空的或只有"4"的第一个分片,后续分片仍可能是事件包
+            return EventSizeLimits.UNKNOWN_EVENT;
+        }
+        if (content.getByte(start) != '4') {
+            return null;
+        }
+        byte type = content.getByte(start + 1);
+        if (type != '2' && type != '5') {
+            return null;
+        }
+        int bracket = content.indexOf(start + 2, end, (byte) '[');
+        if (bracket < 0 || bracket + 1 >= end || content.getByte(bracket + 1) != '"') {
+            return EventSizeLimits.UNKNOWN_EVENT;
+        }
+        int nameStart = bracket + 2;
+        for (int i = nameStart; i < end; i++) {
+            byte b = content.getByte(i);
+            if (b == '\\') {
+                return EventSizeLimits.UNKNOWN_EVENT;
+            }
+            if (b == '"') {
+                return content.toString(nameStart, i - nameStart, StandardCharsets.UTF_8);
+            }
+        }
+        return EventSizeLimits.UNKNOWN_EVENT;
+    }
+}
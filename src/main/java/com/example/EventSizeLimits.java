@@ -0,0 +1,118 @@
+package com.example;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按事件名配置的payload大小上限(字节),以及被拒绝的次数统计
+ */
+@Slf4j
+public class EventSizeLimits {
+    /**
+     * 是事件包但无法确定事件名(名字不在第一个分片里、含转义、离开头太远),按最小的上限检查,
+     * 否则客户端可以借此绕过比默认值更严的单独上限
+     */
+    public static final String UNKNOWN_EVENT = "<unknown>";
+    /**
+     * 拒绝计数中没有单独配置上限的事件名都记在该key下,避免客户端用随意的事件名撑大统计
+     */
+    public static final String DEFAULT_EVENT = "<default>";
+    /**
+     * 拒绝计数中不是事件包的帧(ack等)记在该key下
+     */
+    public static final String NON_EVENT = "<non-event>";
+
+    private final int defaultLimit;
+    private final Map<String, Integer> limits;
+    private final int maxLimit;
+    private final int minLimit;
+    private final ConcurrentMap<String, AtomicLong> rejectedCounts = new ConcurrentHashMap<>();
+
+    /**
+     * @param defaultLimit 没有单独配置的事件(以及无法识别事件名的帧)的上限
+     * @param limits       事件名到上限的映射
+     */
+    public EventSizeLimits(int defaultLimit, Map<String, Integer> limits) {
+        this.defaultLimit = defaultLimit;
+        this.limits = new HashMap<>(limits);
+        int max = defaultLimit;
+        int min = defaultLimit;
+        for (int limit : limits.values()) {
+            max = Math.max(max, limit);
+            min = Math.min(min, limit);
+        }
+        this.maxLimit = max;
+        this.minLimit = min;
+    }
+
+    /**
+     * 解析"事件名=字节数,事件名=字节数"格式的配置
+     */
+    public static EventSizeLimits parse(int defaultLimit, String spec) {
+        Map<String, Integer> limits = new HashMap<>();
+        if (spec != null) {
+            for (String item : spec.split(",")) {
+                int i = item.indexOf('=');
+                if (i > 0) {
+                    limits.put(item.substring(0, i).trim(), Integer.parseInt(item.substring(i + 1).trim()));
+                }
+            }
+        }
+        return new EventSizeLimits(defaultLimit, limits);
+    }
+
+    /**
+     * @param eventName 事件名,不是事件包时为null,是事件包但无法确定事件名时为{@link #UNKNOWN_EVENT}
+     */
+    public int limitOf(String eventName) {
+        if (eventName == null) {
+            return defaultLimit;
+        }
+        if (UNKNOWN_EVENT.equals(eventName)) {
+            return minLimit;
+        }
+        Integer limit = limits.get(eventName);
+        return limit == null ? defaultLimit : limit;
+    }
+
+    /**
+     * 所有上限中的最大值,用作netty的帧/HTTP body上限,超过它的帧在读完帧头时就会被netty拒绝
+     */
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * 记录一次拒绝
+     *
+     * @param eventName 事件名,含义同{@link #limitOf(String)}
+     * @param size      已读到的字节数
+     */
+    public void reject(String eventName, long size) {
+        String key;
+        if (eventName == null) {
+            key = NON_EVENT;
+        } else if (UNKNOWN_EVENT.equals(eventName) || limits.containsKey(eventName)) {
+            key = eventName;
+        } else {
+            key = DEFAULT_EVENT;
+        }
+        long count = rejectedCounts.computeIfAbsent(key, k -> new AtomicLong()).incrementAndGet();
+        log.warn("事件" + (eventName == null ? NON_EVENT : eventName) + "超过大小上限" + limitOf(eventName)
+                + ",已读" + size + "字节,已拒绝,累计拒绝" + count + "次");
+    }
+
+    public Map<String, Long> getRejectedCounts() {
+        Map<String, Long> result = new HashMap<>();
+        for (Map.Entry<String, AtomicLong> entry : rejectedCounts.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().get());
+        }
+        return Collections.unmodifiableMap(result);
+    }
+}
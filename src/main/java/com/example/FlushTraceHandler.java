@@ -0,0 +1,29 @@
+package com.example;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+
+/**
+ * 记录抽样消息emit之后第一次flush(写socket)的开始和结束时间
+ */
+@ChannelHandler.Sharable
+public class FlushTraceHandler extends ChannelOutboundHandlerAdapter {
+
+    private final MessageTracer tracer;
+
+    public FlushTraceHandler(MessageTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        if (!tracer.isAwaitingFlush()) {
+            ctx.flush();
+            return;
+        }
+        tracer.mark(MessageTracer.FLUSH_START);
+        ctx.flush();
+        tracer.mark(MessageTracer.FLUSH_END);
+    }
+}
@@ -8,8 +8,18 @@ import java.io.Serializable;
  * @date 2022/7/4 2:05
  */
 public class MessageBean implements Serializable {
+    /**
+     * toString中每个字段最多输出的字符数,避免大消息刷屏日志
+     */
+    private static final int TO_STRING_FIELD_LIMIT = 200;
+
     public String name;
     public String message;
+    /**
+     * 客户端自增的消息序号,可选,0表示客户端没有带序号.
+     * 服务端记录每个UID处理过的最大序号,重连时通过sessionResumed事件告知客户端,客户端从下一条开始补发
+     */
+    public long seq;
 
     public MessageBean() {
     }
@@ -22,8 +32,16 @@ public class MessageBean implements Serializable {
     @Override
     public String toString() {
         return "MessageBean{" +
-                "name='" + name + '\'' +
-                ", message='" + message + '\'' +
+                "name='" + abbreviate(name) + '\'' +
+                ", message='" + abbreviate(message) + '\'' +
+                ", seq=" + seq +
                 '}';
     }
+
+    private static String abbreviate(String value) {
+        if (value == null || value.length() <= TO_STRING_FIELD_LIMIT) {
+            return value;
+        }
+        return value.substring(0, TO_STRING_FIELD_LIMIT) + "...(共" + value.length() + "字符)";
+    }
 }
\ No newline at end of file
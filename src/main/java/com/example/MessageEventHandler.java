@@ -9,10 +9,18 @@ import com.corundumstudio.socketio.annotation.OnDisconnect;
 import com.corundumstudio.socketio.annotation.OnEvent;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * 客户端和服务端都是通过事件来交互的
@@ -26,6 +34,12 @@ public class MessageEventHandler {
     @Autowired
     private SocketIOServer socketIoServer;
 
+    @Autowired
+    private SessionSnapshotStore sessionSnapshotStore;
+
+    @Autowired
+    private MessageTracer messageTracer;
+
 
     /**
      * 线程安全的map,用于保存和客户端的回话
@@ -37,6 +51,37 @@ public class MessageEventHandler {
      */
     public static ConcurrentMap<String, SocketIOClient> socketIOClientMap = new ConcurrentHashMap<>();
 
+    /**
+     * 每个客户端(UID)对应的批量发送器,高频推送时用sendEventBatched代替client.sendEvent
+     */
+    public static ConcurrentMap<String, EventBatch> eventBatchMap = new ConcurrentHashMap<>();
+
+    /**
+     * 批内事件数达到该值时立即发送
+     */
+    @Value("${socketio.batch.max-size:64}")
+    private int batchMaxSize;
+
+    /**
+     * 批内第一条事件最多等待的毫秒数
+     */
+    @Value("${socketio.batch.max-delay-millis:20}")
+    private long batchMaxDelayMillis;
+
+    /**
+     * 所有EventBatch共用的定时flush线程
+     */
+    private final ScheduledExecutorService batchScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "event-batch-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 快照中有该UID的会话时,连接后发给客户端的事件名,数据为{"lastSeq": 已处理的最大序号, "rooms": 已恢复的房间}
+     */
+    public static final String SESSION_RESUMED_EVENT = "sessionResumed";
+
     private boolean isInit = false;
 
     /**
@@ -50,9 +95,17 @@ public class MessageEventHandler {
         String UID = client.getHandshakeData().getSingleUrlParam("UID");
         //存储SocketIOClient，用于发送消息
         socketIOClientMap.put(UID, client);
+        EventBatch oldBatch = eventBatchMap.put(UID, new EventBatch(client, batchScheduler, batchMaxSize, batchMaxDelayMillis));
+        if (oldBatch != null) {
+            oldBatch.close();
+        }
         //通过client.sendEvent可以往客户端回发消息
 //        client.sendEvent("message", "{\"doctorId\":\"xingwang\"}");
 
+        if (sessionSnapshotStore.isEnabled()) {
+            restoreSession(client, UID);
+        }
+
         log.info("客户端:" + client.getSessionId() + "已连接,UID=" + UID);
 
         if (!isInit) {
@@ -82,6 +135,18 @@ public class MessageEventHandler {
     public void onDisconnect(SocketIOClient client) {
         String uid = client.getHandshakeData().getSingleUrlParam("UID");
         socketIOClientMap.remove(uid);
+        EventBatch batch = eventBatchMap.get(uid);
+        //同一UID可能已经重连,只关闭属于本次断开会话的批
+        if (batch != null && batch.getClient().getSessionId().equals(client.getSessionId())
+                && eventBatchMap.remove(uid, batch)) {
+            batch.close();
+        }
+        //断开后仍保留会话状态,重连时恢复
+        if (sessionSnapshotStore.isEnabled()) {
+            SessionState state = sessionSnapshotStore.getOrCreate(uid);
+            state.lastSeenMillis = System.currentTimeMillis();
+            sessionSnapshotStore.save(state);
+        }
         log.info("客户端:" + client.getSessionId() + "断开连接");
     }
 
@@ -92,16 +157,31 @@ public class MessageEventHandler {
      */
     @OnEvent(value = "ServerReceive")
     public void onEvent(SocketIOClient client, AckRequest request, MessageBean messageBean) {
-        log.info("发来消息：" + messageBean.toString());
-        request.sendAckData(new MessageBean("我是服务端,我收到了你的消息","服务器"));
-        client.sendEvent("sendMessaged", new AckCallback<MessageBean>(MessageBean.class) {
-            @Override
-            public void onSuccess(MessageBean o) {
-                log.info("客户端已应答:"+o);
+        messageTracer.onHandlerStart("ServerReceive");
+        try {
+            log.info("发来消息：" + messageBean.toString());
+            if (messageBean.seq > 0 && sessionSnapshotStore.isEnabled()) {
+                //只更新内存,不在每条消息上写快照;同一客户端的消息在同一个线程上处理
+                SessionState state = sessionSnapshotStore.get(client.getHandshakeData().getSingleUrlParam("UID"));
+                if (state != null && messageBean.seq > state.lastSeq) {
+                    state.lastSeq = messageBean.seq;
+                }
             }
-        }, "服务端向客户端发的消息:" + messageBean);
-        //回发消息
-//        sendBroadcast();
+            messageTracer.mark(MessageTracer.ACK_START);
+            request.sendAckData(new MessageBean("我是服务端,我收到了你的消息","服务器"));
+            messageTracer.mark(MessageTracer.ACK_END);
+            messageTracer.mark(MessageTracer.EMIT_START);
+            client.sendEvent("sendMessaged", new AckCallback<MessageBean>(MessageBean.class) {
+                @Override
+                public void onSuccess(MessageBean o) {
+                    log.info("客户端已应答:"+o);
+                }
+            }, "服务端向客户端发的消息:" + messageBean);
+            //回发消息
+//            sendBroadcast();
+        } finally {
+            messageTracer.onHandlerEnd();
+        }
     }
 
 
@@ -135,13 +215,104 @@ public class MessageEventHandler {
 //        client.sendEvent("messageevent2", "我是服务器都安发送的信息==" + data.getString("FirstName"));
 //    }
 
+    /**
+     * 恢复断线前(或节点重启前)的房间订阅,并把已处理的最大消息序号告诉客户端
+     */
+    private void restoreSession(SocketIOClient client, String uid) {
+        SessionState state = sessionSnapshotStore.get(uid);
+        boolean resumed = state != null;
+        if (!resumed) {
+            state = sessionSnapshotStore.getOrCreate(uid);
+        }
+        for (String room : state.rooms) {
+            client.joinRoom(room);
+        }
+        for (Map.Entry<String, List<String>> entry : client.getHandshakeData().getUrlParams().entrySet()) {
+            if (sessionSnapshotStore.isMetadataKey(entry.getKey()) && !entry.getValue().isEmpty()) {
+                state.metadata.put(entry.getKey(), entry.getValue().get(0));
+            }
+        }
+        state.lastSeenMillis = System.currentTimeMillis();
+        sessionSnapshotStore.save(state);
+
+        if (resumed) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("lastSeq", state.lastSeq);
+            data.put("rooms", state.rooms);
+            client.sendEvent(SESSION_RESUMED_EVENT, data);
+            log.info("UID=" + uid + "恢复会话,房间:" + state.rooms + ",lastSeq=" + state.lastSeq);
+        }
+    }
+
+    /**
+     * 订阅房间,订阅关系会写入会话快照,重连后自动恢复
+     */
+    public void joinRoom(SocketIOClient client, String room) {
+        String uid = client.getHandshakeData().getSingleUrlParam("UID");
+        client.joinRoom(room);
+        if (!sessionSnapshotStore.isEnabled()) {
+            return;
+        }
+        SessionState state = sessionSnapshotStore.getOrCreate(uid);
+        if (state.rooms.add(room)) {
+            sessionSnapshotStore.save(state);
+        }
+    }
+
+    /**
+     * 取消订阅房间
+     */
+    public void leaveRoom(SocketIOClient client, String room) {
+        String uid = client.getHandshakeData().getSingleUrlParam("UID");
+        client.leaveRoom(room);
+        if (!sessionSnapshotStore.isEnabled()) {
+            return;
+        }
+        SessionState state = sessionSnapshotStore.getOrCreate(uid);
+        if (state.rooms.remove(room)) {
+            sessionSnapshotStore.save(state);
+        }
+    }
+
+    /**
+     * 批量发送事件给指定UID的客户端,在一个tick(maxDelayMillis)内或攒够maxSize条后合并成一帧发出
+     *
+     * @param uid  客户端UID
+     * @param name 事件名
+     * @param data 事件数据
+     * @return 该UID不在线(或正在断开)时返回false
+     */
+    public boolean sendEventBatched(String uid, String name, Object... data) {
+        EventBatch batch = eventBatchMap.get(uid);
+        if (batch == null) {
+            return false;
+        }
+        return batch.add(name, data);
+    }
+
+    @PostConstruct
+    public void checkBatchConfig() {
+        EventBatch.checkConfig(batchMaxSize, batchMaxDelayMillis);
+    }
+
+    @PreDestroy
+    public void shutdownBatchScheduler() {
+        for (EventBatch batch : eventBatchMap.values()) {
+            batch.flush();
+        }
+        batchScheduler.shutdown();
+    }
+
     /**
      * 广播消息
+     * <p>
+     * 时间戳在开始发送前取一次,客户端据此算出的延迟包含向所有会话逐个发送的耗时
      */
     public void sendBroadcast() {
+        long now = System.currentTimeMillis();
         for (SocketIOClient client : socketIOClientMap.values()) {
             if (client.isChannelOpen()) {
-                client.sendEvent("Broadcast", "当前时间", System.currentTimeMillis());
+                client.sendEvent("Broadcast", "当前时间", now);
             }
         }
     }
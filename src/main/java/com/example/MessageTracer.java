@@ -0,0 +1,254 @@
+package com.example;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 抽样记录单条消息在 收帧→解码→handler→ack→emit→flush 各阶段的耗时
+ * <p>
+ * netty-socketio在同一个EventLoop线程里完成读帧、解码、调用@OnEvent方法,
+ * 方法里的sendAckData、sendEvent也是在该线程里直接编码并flush的,
+ * 所以用ThreadLocal保存当前消息的时间戳即可,各阶段只需调用mark,不需要在调用链上传递对象.
+ * 收帧时只记下时间,是否抽样在进入事件处理方法时按线程内计数决定,ping等不会进入处理方法的帧不参与计数.
+ * 结果写入预分配的环形缓冲区,不在热路径上分配对象.
+ * 记录里不保存sessionId,查询接口不需要鉴权也不会泄露可用于接管会话的sid.
+ */
+@Component
+public class MessageTracer {
+
+    public static final int RECEIVE = 0;
+    public static final int HANDLER_START = 1;
+    public static final int ACK_START = 2;
+    public static final int ACK_END = 3;
+    public static final int EMIT_START = 4;
+    public static final int FLUSH_START = 5;
+    public static final int FLUSH_END = 6;
+    public static final int HANDLER_END = 7;
+    private static final int STAGE_COUNT = 8;
+
+    /**
+     * 每多少条消息抽样一条,0表示关闭
+     */
+    @Value("${socketio.trace.sample-every:100}")
+    private int sampleEvery;
+
+    /**
+     * 环形缓冲区保存的最近抽样条数
+     */
+    @Value("${socketio.trace.capacity:4096}")
+    private int capacity;
+
+    private TraceRecord[] ring;
+    private final AtomicLong writeIndex = new AtomicLong();
+    private final ThreadLocal<TraceRecord> current = ThreadLocal.withInitial(TraceRecord::new);
+
+    /**
+     * 一条消息的各阶段时间戳(System.nanoTime)
+     */
+    public static class TraceRecord {
+        final long[] stamps = new long[STAGE_COUNT];
+        long wallClockMillis;
+        String event;
+        boolean active;
+        /**
+         * 当前线程正在交给下游的帧的收帧时间,帧处理完后清零,只在ThreadLocal中的记录上使用
+         */
+        long receiveNanos;
+        /**
+         * 当前线程进入事件处理方法的次数,只在ThreadLocal中的记录上使用
+         */
+        long handled;
+
+        long duration(int from, int to) {
+            if (stamps[from] == 0 || stamps[to] == 0) {
+                return 0;
+            }
+            return (stamps[to] - stamps[from]) / 1000;
+        }
+
+        long totalMicros() {
+            return duration(RECEIVE, HANDLER_END);
+        }
+
+        void copyTo(TraceRecord target) {
+            System.arraycopy(stamps, 0, target.stamps, 0, STAGE_COUNT);
+            target.wallClockMillis = wallClockMillis;
+            target.event = event;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        ring = new TraceRecord[Math.max(1, capacity)];
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = new TraceRecord();
+        }
+    }
+
+    /**
+     * 把一条完整的文本消息交给下游之前调用,只记录收帧时间,必须在finally中配对调用{@link #clearReceive()}
+     */
+    public void onReceive() {
+        if (sampleEvery <= 0) {
+            return;
+        }
+        current.get().receiveNanos = System.nanoTime();
+    }
+
+    /**
+     * 下游处理完该帧后调用,避免之后其他来源的消息(如polling)用到过期的收帧时间
+     */
+    public void clearReceive() {
+        if (sampleEvery <= 0) {
+            return;
+        }
+        current.get().receiveNanos = 0;
+    }
+
+    /**
+     * 进入事件处理方法时调用,决定这条消息是否抽样
+     * <p>
+     * 没有收帧时间(polling传输)的消息以进入处理方法的时间作为起点,解码耗时记为0
+     */
+    public void onHandlerStart(String event) {
+        if (sampleEvery <= 0) {
+            return;
+        }
+        TraceRecord record = current.get();
+        record.active = ++record.handled % sampleEvery == 0;
+        if (record.active) {
+            long now = System.nanoTime();
+            Arrays.fill(record.stamps, 0);
+            record.stamps[RECEIVE] = record.receiveNanos == 0 ? now : record.receiveNanos;
+            record.stamps[HANDLER_START] = now;
+            record.wallClockMillis = System.currentTimeMillis() - (now - record.stamps[RECEIVE]) / 1_000_000;
+            record.event = event;
+        }
+    }
+
+    /**
+     * 记录一个阶段的时间戳,当前线程没有抽样中的消息时什么都不做
+     */
+    public void mark(int stage) {
+        if (sampleEvery <= 0) {
+            return;
+        }
+        TraceRecord record = current.get();
+        if (record.active) {
+            record.stamps[stage] = System.nanoTime();
+        }
+    }
+
+    /**
+     * emit之后的第一次flush才算作该消息的flush阶段
+     */
+    public boolean isAwaitingFlush() {
+        if (sampleEvery <= 0) {
+            return false;
+        }
+        TraceRecord record = current.get();
+        return record.active && record.stamps[EMIT_START] != 0 && record.stamps[FLUSH_START] == 0;
+    }
+
+    /**
+     * 事件处理方法结束时调用,把结果写入环形缓冲区
+     */
+    public void onHandlerEnd() {
+        if (sampleEvery <= 0) {
+            return;
+        }
+        TraceRecord record = current.get();
+        if (!record.active) {
+            return;
+        }
+        record.stamps[HANDLER_END] = System.nanoTime();
+        record.active = false;
+        TraceRecord slot = ring[(int) (writeIndex.getAndIncrement() % ring.length)];
+        synchronized (slot) {
+            record.copyTo(slot);
+        }
+    }
+
+    /**
+     * @param limit 最多返回的条数,小于等于0时返回空列表
+     * @return 环形缓冲区中总耗时最长的limit条,按耗时倒序
+     */
+    public List<Map<String, Object>> slowest(int limit) {
+        List<TraceRecord> records = snapshot();
+        records.sort((a, b) -> Long.compare(b.totalMicros(), a.totalMicros()));
+        List<Map<String, Object>> result = new ArrayList<>();
+        int count = Math.max(0, Math.min(limit, records.size()));
+        for (TraceRecord record : records.subList(0, count)) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("time", record.wallClockMillis);
+            item.put("event", record.event);
+            item.put("totalMicros", record.totalMicros());
+            item.put("decodeMicros", record.duration(RECEIVE, HANDLER_START));
+            item.put("handlerMicros", record.duration(HANDLER_START, ACK_START));
+            item.put("ackMicros", record.duration(ACK_START, ACK_END));
+            item.put("emitMicros", record.duration(EMIT_START, FLUSH_START));
+            item.put("flushMicros", record.duration(FLUSH_START, FLUSH_END));
+            result.add(item);
+        }
+        return result;
+    }
+
+    /**
+     * 导出为Chrome Trace Event格式,可直接用chrome://tracing或Perfetto打开
+     */
+    public Map<String, Object> exportTraceEvents() {
+        List<Map<String, Object>> events = new ArrayList<>();
+        int tid = 0;
+        for (TraceRecord record : snapshot()) {
+            tid++;
+            long base = record.wallClockMillis * 1000;
+            addTraceEvent(events, record, tid, base, "decode", RECEIVE, HANDLER_START);
+            addTraceEvent(events, record, tid, base, "handler", HANDLER_START, HANDLER_END);
+            addTraceEvent(events, record, tid, base, "ack", ACK_START, ACK_END);
+            addTraceEvent(events, record, tid, base, "emit", EMIT_START, FLUSH_START);
+            addTraceEvent(events, record, tid, base, "flush", FLUSH_START, FLUSH_END);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("traceEvents", events);
+        result.put("displayTimeUnit", "ms");
+        return result;
+    }
+
+    private static void addTraceEvent(List<Map<String, Object>> events, TraceRecord record, int tid, long base,
+                                      String name, int from, int to) {
+        if (record.stamps[from] == 0 || record.stamps[to] == 0) {
+            return;
+        }
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("name", name);
+        event.put("cat", record.event);
+        event.put("ph", "X");
+        event.put("ts", base + record.duration(RECEIVE, from));
+        event.put("dur", record.duration(from, to));
+        event.put("pid", 1);
+        event.put("tid", tid);
+        events.add(event);
+    }
+
+    private List<TraceRecord> snapshot() {
+        List<TraceRecord> records = new ArrayList<>();
+        for (TraceRecord slot : ring) {
+            TraceRecord copy = new TraceRecord();
+            synchronized (slot) {
+                slot.copyTo(copy);
+            }
+            if (copy.totalMicros() > 0) {
+                records.add(copy);
+            }
+        }
+        return records;
+    }
+}
@@ -2,14 +2,40 @@ package com.example;
 
 import com.corundumstudio.socketio.AuthorizationListener;
 import com.corundumstudio.socketio.HandshakeData;
+import com.corundumstudio.socketio.SocketIOChannelInitializer;
 import com.corundumstudio.socketio.SocketIOServer;
 import com.corundumstudio.socketio.Transport;
 import com.corundumstudio.socketio.annotation.SpringAnnotationScanner;
+import io.netty.channel.ChannelPipeline;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
 public class NettySocketioConfig {
+
+    @Autowired
+    private MessageTracer messageTracer;
+
+    @Value("${socketio.hostname:192.168.0.103}")
+    private String hostname;
+
+    @Value("${socketio.port:9092}")
+    private int port;
+
+    /**
+     * 没有单独配置的事件的payload上限,字节
+     */
+    @Value("${socketio.event-size-limit.default:65536}")
+    private int defaultEventSizeLimit;
+
+    /**
+     * 按事件名单独配置的上限,格式:事件名=字节数,事件名=字节数
+     */
+    @Value("${socketio.event-size-limit.events:}")
+    private String eventSizeLimitSpec;
+
     /**
      * netty-socketio服务器
      * 主类的socketio
@@ -17,19 +43,47 @@ public class NettySocketioConfig {
     @Bean
     public SocketIOServer socketIOServer() {
         com.corundumstudio.socketio.Configuration config = new com.corundumstudio.socketio.Configuration();
-        config.setHostname("192.168.0.103");
-        config.setPort(9092);//监听的socket端口
+        config.setHostname(hostname);
+        config.setPort(port);//监听的socket端口
         config.setTransports(Transport.POLLING,Transport.WEBSOCKET);
         config.setPingInterval(10000);
         config.setAuthorizationListener(new AuthorizationListener() {
             @Override
             public boolean isAuthorized(HandshakeData handshakeData) {
-                return true;
+                //下线过程中拒绝新的握手,让客户端连到其他节点
+                return !SocketIOServerLifecycle.draining;
             }
         });
+        //netty在读到帧头/HTTP头时就拒绝超过最大上限的帧,按事件名的上限由EventSizeLimitHandler在聚合前检查
+        EventSizeLimits limits = eventSizeLimits();
+        config.setMaxFramePayloadLength(limits.getMaxLimit());
+        config.setMaxHttpContentLength(limits.getMaxLimit());
+        //permessage-deflate的解压handler在EventSizeLimitHandler之前,压缩后的帧会绕过按事件名的上限,
+        //且解压后的大小不受maxFramePayloadLength限制,所以关闭websocket压缩
+        config.setWebsocketCompression(false);
+        FlushTraceHandler flushTraceHandler = new FlushTraceHandler(messageTracer);
         SocketIOServer server = new SocketIOServer(config);
+        server.setPipelineFactory(new SocketIOChannelInitializer() {
+            @Override
+            protected void addSocketioHandlers(ChannelPipeline pipeline) {
+                super.addSocketioHandlers(pipeline);
+                SocketIOServerLifecycle.channels.add(pipeline.channel());
+                //websocket握手后WebSocketFrameAggregator会插在WEB_SOCKET_TRANSPORT之前,即本handler之后
+                pipeline.addBefore(WEB_SOCKET_TRANSPORT, "eventSizeLimit", new EventSizeLimitHandler(limits, messageTracer));
+                //放在最前面(最靠近socket),flush耗时即实际写socket的耗时
+                pipeline.addFirst("flushTrace", flushTraceHandler);
+            }
+        });
         return server;
     }
+
+    /**
+     * 按事件名的payload大小上限和拒绝计数
+     */
+    @Bean
+    public EventSizeLimits eventSizeLimits() {
+        return EventSizeLimits.parse(defaultEventSizeLimit, eventSizeLimitSpec);
+    }
  
     /**
      * 用于扫描netty-socketio的注解，比如 @OnConnect、@OnEvent
@@ -0,0 +1,429 @@
+package com.example;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 会话状态快照,写到内存映射文件里,节点重启后重连的UID能立刻恢复房间订阅和消息序号
+ * <p>
+ * 文件格式:
+ * 头部16字节: magic(int) version(int) 有效数据末尾位置(long)
+ * 之后是追加写的记录: 长度(int) 类型(byte) 内容
+ * PUT  - uid lastSeq lastSeenMillis 房间数 房间... 元数据数 key value...
+ * <p>
+ * 只在连接、断开、订阅变化和下线时追加一条记录(写内存映射区域,不经过系统调用),不在每条消息上写.
+ * 记录写完后才更新头部的末尾位置,进程中途崩溃时只会丢掉最后一条不完整的记录.
+ * 文件写满时把内存中的当前状态写到临时文件,刷盘后原子重命名替换原文件,压缩中途崩溃时原文件不受影响.
+ * 启动时只映射文件,第一次访问状态时才扫描记录重建索引,遇到损坏的记录时从该处截断.
+ */
+@Component
+@Slf4j
+public class SessionSnapshotStore {
+
+    private static final int MAGIC = 0x534E4150;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 16;
+    private static final int END_POSITION_OFFSET = 8;
+    private static final int MAX_RECORD_SIZE = 64 * 1024;
+
+    private static final byte TYPE_PUT = 1;
+
+    @Value("${socketio.snapshot.enabled:false}")
+    private volatile boolean enabled;
+
+    @Value("${socketio.snapshot.file:session-snapshot.bin}")
+    private String file;
+
+    @Value("${socketio.snapshot.size-mb:64}")
+    private int sizeMb;
+
+    /**
+     * 压缩时丢弃超过该时间没有出现过的UID
+     */
+    @Value("${socketio.snapshot.retention-hours:24}")
+    private long retentionHours;
+
+    /**
+     * 允许保存到快照的握手url参数,逗号分隔.默认不保存,
+     * EIO、transport、t这类每次连接都变的参数和token之类的敏感参数不要加进来
+     */
+    @Value("${socketio.snapshot.metadata-keys:}")
+    private String metadataKeySpec;
+
+    private Set<String> metadataKeys = Collections.emptySet();
+
+    private RandomAccessFile randomAccessFile;
+    private MappedByteBuffer mapped;
+    private final ByteBuffer recordBuffer = ByteBuffer.allocate(MAX_RECORD_SIZE);
+
+    /**
+     * 第一次访问时才从文件加载
+     */
+    private volatile ConcurrentMap<String, SessionState> states;
+
+    @PostConstruct
+    public void open() {
+        if (!enabled) {
+            return;
+        }
+        Set<String> keys = new HashSet<>();
+        for (String key : metadataKeySpec.split(",")) {
+            if (!key.trim().isEmpty()) {
+                keys.add(key.trim());
+            }
+        }
+        metadataKeys = keys;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            mapped = map(randomAccessFile);
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+                initHeader(mapped);
+            }
+            log.info("会话快照文件:" + file + ",已用" + mapped.getLong(END_POSITION_OFFSET) + "字节");
+        } catch (IOException e) {
+            log.error("打开会话快照文件失败,本次运行不保存快照", e);
+            closeQuietly(randomAccessFile);
+            enabled = false;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return 该握手参数是否允许保存到快照
+     */
+    public boolean isMetadataKey(String key) {
+        return metadataKeys.contains(key);
+    }
+
+    /**
+     * 把映射区域刷到磁盘,下线时调用
+     */
+    public void force() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            if (mapped != null) {
+                mapped.force();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            if (mapped != null) {
+                mapped.force();
+            }
+            closeQuietly(randomAccessFile);
+            randomAccessFile = null;
+            mapped = null;
+            enabled = false;
+        }
+    }
+
+    /**
+     * @return 该UID的会话状态,没有或未开启快照时返回null
+     */
+    public SessionState get(String uid) {
+        if (!enabled) {
+            return null;
+        }
+        return states().get(uid);
+    }
+
+    /**
+     * 取出或新建该UID的会话状态,修改后需调用save.调用前需确认isEnabled()
+     */
+    public SessionState getOrCreate(String uid) {
+        return states().computeIfAbsent(uid, SessionState::new);
+    }
+
+    /**
+     * 保存完整状态(房间、元数据、序号)
+     */
+    public void save(SessionState state) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            if (mapped == null) {
+                return;
+            }
+            if (!encode(state)) {
+                log.warn("会话状态过大,未写入快照:" + state.uid);
+                return;
+            }
+            append();
+        }
+    }
+
+    /**
+     * 保存所有状态,下线前调用,把只在内存中更新的序号写入快照
+     */
+    public void saveAll() {
+        if (!enabled) {
+            return;
+        }
+        for (SessionState state : states().values()) {
+            save(state);
+        }
+    }
+
+    private ConcurrentMap<String, SessionState> states() {
+        if (states == null) {
+            synchronized (this) {
+                if (states == null) {
+                    long start = System.nanoTime();
+                    states = load();
+                    log.info("加载会话快照:" + states.size() + "个UID,耗时"
+                            + (System.nanoTime() - start) / 1000 + "us");
+                }
+            }
+        }
+        return states;
+    }
+
+    private ConcurrentMap<String, SessionState> load() {
+        ConcurrentMap<String, SessionState> result = new ConcurrentHashMap<>();
+        if (mapped == null) {
+            return result;
+        }
+        long end = mapped.getLong(END_POSITION_OFFSET);
+        if (end < HEADER_SIZE || end > mapped.capacity()) {
+            log.warn("会话快照头部损坏,末尾位置:" + end + ",丢弃全部记录");
+            mapped.putLong(END_POSITION_OFFSET, HEADER_SIZE);
+            return result;
+        }
+        ByteBuffer buffer = mapped.duplicate();
+        buffer.limit((int) end);
+        buffer.position(HEADER_SIZE);
+        while (buffer.hasRemaining()) {
+            int recordStart = buffer.position();
+            try {
+                int length = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    throw new IllegalArgumentException("记录长度非法:" + length);
+                }
+                ByteBuffer record = buffer.slice();
+                record.limit(length);
+                buffer.position(buffer.position() + length);
+                decode(record, result);
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                log.warn("会话快照在位置" + recordStart + "处损坏(" + e + "),从该处截断");
+                mapped.putLong(END_POSITION_OFFSET, recordStart);
+                break;
+            }
+        }
+        return result;
+    }
+
+    private static void decode(ByteBuffer record, Map<String, SessionState> result) {
+        byte type = record.get();
+        if (type != TYPE_PUT) {
+            throw new IllegalArgumentException("未知记录类型:" + type);
+        }
+        String uid = getString(record);
+        long lastSeq = record.getLong();
+        long lastSeenMillis = record.getLong();
+        String[] rooms = new String[readCount(record)];
+        for (int i = 0; i < rooms.length; i++) {
+            rooms[i] = getString(record);
+        }
+        String[] metadata = new String[readCount(record) * 2];
+        for (int i = 0; i < metadata.length; i++) {
+            metadata[i] = getString(record);
+        }
+        //整条记录解析成功后才修改状态,损坏的记录不会留下一半的数据
+        SessionState state = result.computeIfAbsent(uid, SessionState::new);
+        state.lastSeq = lastSeq;
+        state.lastSeenMillis = lastSeenMillis;
+        state.rooms.clear();
+        state.rooms.addAll(Arrays.asList(rooms));
+        state.metadata.clear();
+        for (int i = 0; i < metadata.length; i += 2) {
+            state.metadata.put(metadata[i], metadata[i + 1]);
+        }
+    }
+
+    /**
+     * 读取一个数量字段,每个元素至少占2字节,超出剩余长度说明记录已损坏
+     */
+    private static int readCount(ByteBuffer record) {
+        int count = record.getInt();
+        if (count < 0 || count > record.remaining() / 2) {
+            throw new IllegalArgumentException("数量字段非法:" + count);
+        }
+        return count;
+    }
+
+    /**
+     * 把状态编码到recordBuffer,需持有锁调用
+     * <p>
+     * 房间和元数据会被其他EventLoop线程并发修改,先复制再按副本写数量和内容,保证两者一致
+     *
+     * @return 状态过大时返回false
+     */
+    private boolean encode(SessionState state) {
+        String[] rooms = state.rooms.toArray(new String[0]);
+        Map<String, String> metadata = new HashMap<>(state.metadata);
+        recordBuffer.clear();
+        try {
+            recordBuffer.put(TYPE_PUT);
+            putString(recordBuffer, state.uid);
+            recordBuffer.putLong(state.lastSeq);
+            recordBuffer.putLong(state.lastSeenMillis);
+            recordBuffer.putInt(rooms.length);
+            for (String room : rooms) {
+                putString(recordBuffer, room);
+            }
+            recordBuffer.putInt(metadata.size());
+            for (Map.Entry<String, String> entry : metadata.entrySet()) {
+                putString(recordBuffer, entry.getKey());
+                putString(recordBuffer, entry.getValue());
+            }
+        } catch (BufferOverflowException e) {
+            return false;
+        }
+        recordBuffer.flip();
+        return true;
+    }
+
+    /**
+     * 把recordBuffer中的记录追加到文件,空间不足时先压缩,需持有锁调用
+     */
+    private void append() {
+        if (writeRecord(mapped, recordBuffer)) {
+            return;
+        }
+        ByteBuffer record = ByteBuffer.allocate(recordBuffer.remaining());
+        record.put(recordBuffer).flip();
+        if (!compact() || !writeRecord(mapped, record)) {
+            log.warn("会话快照文件已满,请调大socketio.snapshot.size-mb");
+        }
+    }
+
+    /**
+     * @return 空间不足时返回false,不写入任何内容
+     */
+    private static boolean writeRecord(MappedByteBuffer target, ByteBuffer record) {
+        int length = record.remaining();
+        long end = target.getLong(END_POSITION_OFFSET);
+        if (end + 4 + length > target.capacity()) {
+            return false;
+        }
+        target.putInt((int) end, length);
+        ByteBuffer body = target.duplicate();
+        body.position((int) end + 4);
+        body.put(record);
+        //记录写完再更新末尾位置
+        target.putLong(END_POSITION_OFFSET, end + 4 + length);
+        return true;
+    }
+
+    /**
+     * 把内存中的当前状态写到临时文件,刷盘后原子替换原文件,需持有锁调用
+     *
+     * @return 压缩失败时返回false,原文件保持不变
+     */
+    private boolean compact() {
+        long expireBefore = System.currentTimeMillis() - retentionHours * 3600 * 1000;
+        states().values().removeIf(state -> state.lastSeenMillis < expireBefore
+                && !MessageEventHandler.socketIOClientMap.containsKey(state.uid));
+
+        Path path = Paths.get(file);
+        Path tempPath = Paths.get(file + ".compact");
+        RandomAccessFile tempFile = null;
+        try {
+            tempFile = new RandomAccessFile(tempPath.toFile(), "rw");
+            tempFile.setLength(0);
+            MappedByteBuffer tempMapped = map(tempFile);
+            initHeader(tempMapped);
+            for (SessionState state : states.values()) {
+                if (encode(state) && !writeRecord(tempMapped, recordBuffer)) {
+                    throw new IOException("压缩后的数据仍超过文件大小");
+                }
+            }
+            tempMapped.force();
+            Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            closeQuietly(randomAccessFile);
+            randomAccessFile = tempFile;
+            mapped = tempMapped;
+            log.info("会话快照已压缩:" + states.size() + "个UID," + mapped.getLong(END_POSITION_OFFSET) + "字节");
+            return true;
+        } catch (IOException e) {
+            log.error("会话快照压缩失败,保留原文件", e);
+            closeQuietly(tempFile);
+            try {
+                Files.deleteIfExists(tempPath);
+            } catch (IOException ignore) {
+            }
+            return false;
+        }
+    }
+
+    private MappedByteBuffer map(RandomAccessFile target) throws IOException {
+        return target.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, (long) sizeMb * 1024 * 1024);
+    }
+
+    private static void initHeader(MappedByteBuffer target) {
+        target.putInt(0, MAGIC);
+        target.putInt(4, VERSION);
+        target.putLong(END_POSITION_OFFSET, HEADER_SIZE);
+    }
+
+    private static void closeQuietly(RandomAccessFile target) {
+        if (target == null) {
+            return;
+        }
+        try {
+            target.close();
+        } catch (IOException e) {
+            log.warn("关闭会话快照文件失败", e);
+        }
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) Math.min(bytes.length, 0xFFFF));
+        buffer.put(bytes, 0, Math.min(bytes.length, 0xFFFF));
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按UID保存的会话状态,客户端断开后仍保留,重连或节点重启后可直接恢复
+ */
+public class SessionState {
+    public final String uid;
+    /**
+     * 订阅的房间
+     */
+    public final Set<String> rooms = ConcurrentHashMap.newKeySet();
+    /**
+     * 握手时带的url参数,只保存socketio.snapshot.metadata-keys中允许的参数
+     */
+    public final Map<String, String> metadata = new ConcurrentHashMap<>();
+    /**
+     * 已处理的该UID发来的最大消息序号(MessageBean.seq),只在内存中更新,断开和下线时写入快照
+     */
+    public volatile long lastSeq;
+    /**
+     * 最后一次连接、断开或收到消息的时间
+     */
+    public volatile long lastSeenMillis;
+
+    public SessionState(String uid) {
+        this.uid = uid;
+    }
+
+    @Override
+    public String toString() {
+        return "SessionState{" +
+                "uid='" + uid + '\'' +
+                ", rooms=" + rooms +
+                ", metadata=" + metadata +
+                ", lastSeq=" + lastSeq +
+                ", lastSeenMillis=" + lastSeenMillis +
+                '}';
+    }
+}
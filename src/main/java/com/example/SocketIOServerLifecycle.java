@@ -0,0 +1,181 @@
+package com.example;
+
+import com.corundumstudio.socketio.SocketIOClient;
+import com.corundumstudio.socketio.SocketIOServer;
+import com.corundumstudio.socketio.handler.ClientHead;
+import io.netty.channel.Channel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * socket.io服务的启动与优雅下线
+ * <p>
+ * 应用关闭时(如滚动发布)不直接断开所有连接,而是:
+ * 1.拒绝新的握手
+ * 2.把批量发送器里未发出的事件发出去
+ * 3.给每个客户端发送RECONNECT_EVENT,携带一个随机延迟,并在该延迟后关闭它的底层连接,让重连错开到jitter窗口内
+ * 4.所有客户端断开或到达deadline后停止服务,并把会话快照刷到磁盘(需开启socketio.snapshot.enabled)
+ * 这样重连不会在同一时刻打到其他节点上
+ * <p>
+ * 第3步不用client.disconnect():它会发送socket.io的DISCONNECT包,标准客户端收到后认为是服务端主动断开("io server disconnect"),
+ * 不会自动重连.直接关闭连接时客户端看到的是"transport close",会按自己的退避策略重连,不需要客户端处理RECONNECT_EVENT.
+ * polling客户端的连接是短的HTTP请求,关闭当前请求后客户端可能在新请求上继续轮询,这部分连接在deadline时随服务停止一起断开.
+ */
+@Component
+@Slf4j
+public class SocketIOServerLifecycle implements SmartLifecycle {
+
+    /**
+     * 通知客户端换节点重连的事件名,数据为{"delayMillis": 客户端断开前的等待毫秒数}
+     */
+    public static final String RECONNECT_EVENT = "reconnectElsewhere";
+
+    /**
+     * 是否正在下线,为true时AuthorizationListener拒绝新的握手
+     */
+    public static volatile boolean draining = false;
+
+    /**
+     * 所有socket.io连接,由NettySocketioConfig里的pipeline初始化时加入,连接关闭后自动移除
+     */
+    public static final ChannelGroup channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+
+    @Autowired
+    private SocketIOServer socketIOServer;
+
+    @Autowired
+    private SessionSnapshotStore sessionSnapshotStore;
+
+    /**
+     * 客户端断开时间在[0, jitterMillis)内随机分布
+     */
+    @Value("${socketio.drain.jitter-millis:5000}")
+    private long jitterMillis;
+
+    /**
+     * 从开始下线到强制停止服务的最长毫秒数,需小于spring.lifecycle.timeout-per-shutdown-phase(默认30秒)
+     */
+    @Value("${socketio.drain.deadline-millis:15000}")
+    private long deadlineMillis;
+
+    private volatile boolean running = false;
+
+    @Override
+    public void start() {
+        draining = false;
+        socketIOServer.start();
+        running = true;
+        log.info("socket.io启动成功！");
+    }
+
+    @Override
+    public void stop() {
+        drain();
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        Thread thread = new Thread(() -> {
+            try {
+                drain();
+            } finally {
+                callback.run();
+            }
+        }, "socketio-drain");
+        thread.start();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * phase越大越晚启动、越早停止.web容器(WebServerStartStopLifecycle)的phase是Integer.MAX_VALUE - 1,
+     * 这里取Integer.MAX_VALUE,socket.io在web容器启动之后启动,在web容器停止之前完成下线
+     */
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * 下线当前节点,阻塞直到所有客户端断开或到达deadline
+     */
+    public void drain() {
+        if (!running) {
+            return;
+        }
+        draining = true;
+        long deadline = System.currentTimeMillis() + deadlineMillis;
+        List<SocketIOClient> clients = new ArrayList<>(socketIOServer.getAllClients());
+        log.info("socket.io开始下线,当前连接数:" + clients.size());
+
+        for (EventBatch batch : MessageEventHandler.eventBatchMap.values()) {
+            batch.flush();
+        }
+
+        //断开时间不能超过deadline,留出1秒给最后一批断开
+        long window = Math.max(0, Math.min(jitterMillis, deadlineMillis - 1000));
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "socketio-drain-disconnect");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Map<UUID, List<Channel>> clientChannels = new HashMap<>();
+        for (Channel channel : channels) {
+            ClientHead head = channel.attr(ClientHead.CLIENT).get();
+            if (head != null) {
+                clientChannels.computeIfAbsent(head.getSessionId(), k -> new ArrayList<>()).add(channel);
+            }
+        }
+        for (SocketIOClient client : clients) {
+            long delay = window == 0 ? 0 : ThreadLocalRandom.current().nextLong(window);
+            Map<String, Object> hint = new HashMap<>();
+            hint.put("delayMillis", delay);
+            client.sendEvent(RECONNECT_EVENT, hint);
+            List<Channel> toClose = clientChannels.get(client.getSessionId());
+            if (toClose == null) {
+                continue;
+            }
+            scheduler.schedule(() -> {
+                for (Channel channel : toClose) {
+                    channel.close();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        scheduler.shutdown();
+
+        try {
+            while (System.currentTimeMillis() < deadline && !socketIOServer.getAllClients().isEmpty()) {
+                TimeUnit.MILLISECONDS.sleep(100);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler.shutdownNow();
+
+        int remaining = socketIOServer.getAllClients().size();
+        socketIOServer.stop();
+        sessionSnapshotStore.saveAll();
+        sessionSnapshotStore.force();
+        running = false;
+        log.info("socket.io已停止,强制断开的连接数:" + remaining);
+    }
+}
@@ -0,0 +1,39 @@
+package com.example;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 查看抽样的消息耗时,不需要挂profiler
+ * <p>
+ * 返回结果只有事件名和各阶段耗时,不含sessionId等可用于冒充客户端的信息
+ */
+@RestController
+@RequestMapping("/trace")
+public class TraceController {
+
+    @Autowired
+    private MessageTracer messageTracer;
+
+    /**
+     * 最近抽样中最慢的消息及各阶段耗时(微秒)
+     */
+    @GetMapping("/slowest")
+    public List<Map<String, Object>> slowest(@RequestParam(defaultValue = "20") int limit) {
+        return messageTracer.slowest(limit);
+    }
+
+    /**
+     * 最近抽样的Chrome Trace Event格式数据,保存为json后用chrome://tracing或Perfetto打开
+     */
+    @GetMapping("/export")
+    public Map<String, Object> export() {
+        return messageTracer.exportTraceEvents();
+    }
+}
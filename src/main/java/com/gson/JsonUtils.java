@@ -1,7 +1,7 @@
 package com.gson;
 
-import android.text.TextUtils;
 import com.google.gson.*;
+import com.google.gson.internal.LazilyParsedNumber;
 import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonToken;
@@ -23,6 +23,11 @@ public class JsonUtils {
     private static Gson gson;
     private static Gson excludeGson;    //被GsonExclude注解的字段被排除(不参与json序列化与反序列化)
 
+    //数字适配器无状态,包装类型和基本类型共用同一个实例
+    private static final TypeAdapter<Double> DOUBLE_DEFAULT_0 = new DoubleDefault0TypeAdapter();
+    private static final TypeAdapter<Integer> INTEGER_DEFAULT_0 = new IntegerDefault0TypeAdapter();
+    private static final TypeAdapter<Long> LONG_DEFAULT_0 = new LongDefault0TypeAdapter();
+
     public static class StringTypeAdapter extends TypeAdapter<String> {
         @Override
         public String read(JsonReader reader) throws IOException {
@@ -44,6 +49,179 @@ public class JsonUtils {
         }
     }
 
+    /**
+     * 流式读写double,不创建JsonElement,""、"null"读作0,null读作null
+     */
+    public static class DoubleDefault0TypeAdapter extends TypeAdapter<Double> {
+        @Override
+        public Double read(JsonReader reader) throws IOException {
+            JsonToken token = reader.peek();
+            if (token == JsonToken.NULL) {
+                //与原来注册的JsonDeserializer一致:包装类型读作null,基本类型字段保留初始值
+                reader.nextNull();
+                return null;
+            }
+            if (token == JsonToken.STRING) {//定义为double类型,如果后台返回""或者"null",则返回0.00
+                String value = reader.nextString();
+                if (value.isEmpty() || value.equals("null")) {
+                    return 0.00;
+                }
+                try {
+                    return Double.parseDouble(value);
+                } catch (NumberFormatException e) {
+                    throw new JsonSyntaxException(e);
+                }
+            }
+            try {
+                return reader.nextDouble();
+            } catch (NumberFormatException | IllegalStateException e) {
+                throw new JsonSyntaxException(e);
+            }
+        }
+
+        @Override
+        public void write(JsonWriter writer, Double value) throws IOException {
+            if (value == null) {
+                writer.nullValue();
+                return;
+            }
+            writer.value(value.doubleValue());
+        }
+    }
+
+    /**
+     * 流式读写int,不创建JsonElement,""、"null"读作0,null读作null
+     */
+    public static class IntegerDefault0TypeAdapter extends TypeAdapter<Integer> {
+        @Override
+        public Integer read(JsonReader reader) throws IOException {
+            JsonToken token = reader.peek();
+            if (token == JsonToken.NULL) {
+                //与原来注册的JsonDeserializer一致:包装类型读作null,基本类型字段保留初始值
+                reader.nextNull();
+                return null;
+            }
+            if (token == JsonToken.STRING) {//定义为int类型,如果后台返回""或者"null",则返回0
+                String value = reader.nextString();
+                if (value.isEmpty() || value.equals("null")) {
+                    return 0;
+                }
+                try {
+                    return Integer.parseInt(value);
+                } catch (NumberFormatException e) {
+                    throw new JsonSyntaxException(e);
+                }
+            }
+            try {
+                return reader.nextInt();
+            } catch (NumberFormatException e) {
+                //1.5、1e10这类数字,nextInt失败后数字已缓存为字符串,按原来tree方式的规则截断
+                return new LazilyParsedNumber(reader.nextString()).intValue();
+            } catch (IllegalStateException e) {
+                throw new JsonSyntaxException(e);
+            }
+        }
+
+        @Override
+        public void write(JsonWriter writer, Integer value) throws IOException {
+            if (value == null) {
+                writer.nullValue();
+                return;
+            }
+            writer.value(value.intValue());
+        }
+    }
+
+    /**
+     * 流式读写long,不创建JsonElement,""、"null"读作0,null读作null
+     */
+    public static class LongDefault0TypeAdapter extends TypeAdapter<Long> {
+        @Override
+        public Long read(JsonReader reader) throws IOException {
+            JsonToken token = reader.peek();
+            if (token == JsonToken.NULL) {
+                //与原来注册的JsonDeserializer一致:包装类型读作null,基本类型字段保留初始值
+                reader.nextNull();
+                return null;
+            }
+            if (token == JsonToken.STRING) {//定义为long类型,如果后台返回""或者"null",则返回0
+                String value = reader.nextString();
+                if (value.isEmpty() || value.equals("null")) {
+                    return 0L;
+                }
+                try {
+                    return Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    throw new JsonSyntaxException(e);
+                }
+            }
+            try {
+                return reader.nextLong();
+            } catch (NumberFormatException e) {
+                return new LazilyParsedNumber(reader.nextString()).longValue();
+            } catch (IllegalStateException e) {
+                throw new JsonSyntaxException(e);
+            }
+        }
+
+        @Override
+        public void write(JsonWriter writer, Long value) throws IOException {
+            if (value == null) {
+                writer.nullValue();
+                return;
+            }
+            writer.value(value.longValue());
+        }
+    }
+
+    /**
+     * List、Collection、ArrayList字段为null、""或"null"时读作空的ArrayList(与原ListDefault0Adapter3对null的处理一致),
+     * 其余交给gson默认的集合适配器流式处理,不创建JsonElement
+     */
+    public static class ListDefault0TypeAdapterFactory implements TypeAdapterFactory {
+        @Override
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
+            Class<? super T> rawType = typeToken.getRawType();
+            if (rawType != List.class && rawType != Collection.class && rawType != ArrayList.class) {
+                return null;
+            }
+            final TypeAdapter<T> delegate = gson.getDelegateAdapter(this, typeToken);
+            return new TypeAdapter<T>() {
+                @Override
+                public void write(JsonWriter writer, T value) throws IOException {
+                    delegate.write(writer, value);
+                }
+
+                @Override
+                public T read(JsonReader reader) throws IOException {
+                    JsonToken token = reader.peek();
+                    if (token == JsonToken.NULL) {
+                        reader.nextNull();
+                        return empty();
+                    }
+                    if (token == JsonToken.STRING) {
+                        String value = reader.nextString();
+                        if (value.isEmpty() || value.equals("null")) {
+                            return empty();
+                        }
+                        throw new JsonSyntaxException("Expected BEGIN_ARRAY but was STRING: " + reader.getPath());
+                    }
+                    return delegate.read(reader);
+                }
+
+                //只处理List、Collection、ArrayList,ArrayList对三者都可赋值
+                @SuppressWarnings("unchecked")
+                private T empty() {
+                    return (T) new ArrayList<>();
+                }
+            };
+        }
+    }
+
+    /**
+     * @deprecated 基于JsonElement,每个数字都会创建对象,使用{@link DoubleDefault0TypeAdapter}
+     */
+    @Deprecated
     public static class DoubleDefault0Adapter implements JsonSerializer<Double>, JsonDeserializer<Double> {
         @Override
         public Double deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
@@ -66,6 +244,10 @@ public class JsonUtils {
         }
     }
 
+    /**
+     * @deprecated 基于JsonElement,每个数字都会创建对象,使用{@link IntegerDefault0TypeAdapter}
+     */
+    @Deprecated
     public static class IntegerDefault0Adapter implements JsonSerializer<Integer>, JsonDeserializer<Integer> {
         @Override
         public Integer deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
@@ -89,6 +271,10 @@ public class JsonUtils {
     }
 
 
+    /**
+     * @deprecated 基于JsonElement,每个数字都会创建对象,使用{@link LongDefault0TypeAdapter}
+     */
+    @Deprecated
     public static class LongDefault0Adapter implements JsonSerializer<Long>, JsonDeserializer<Long> {
         @Override
         public Long deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
@@ -112,6 +298,10 @@ public class JsonUtils {
     }
 
 
+    /**
+     * @deprecated 使用{@link ListDefault0TypeAdapterFactory}
+     */
+    @Deprecated
     public static class ListDefault0Adapter implements JsonSerializer<Collection<?>>, JsonDeserializer<Collection<?>> {
         @Override
         public Collection<?> deserialize(JsonElement jsonElement, Type type, JsonDeserializationContext jsonDeserializationContext) throws JsonParseException {
@@ -124,6 +314,10 @@ public class JsonUtils {
         }
     }
 
+    /**
+     * @deprecated 使用{@link ListDefault0TypeAdapterFactory}
+     */
+    @Deprecated
     public static class ListDefault0Adapter1 implements JsonSerializer<List<?>>, JsonDeserializer<List<?>> {
         @Override
         public List<?> deserialize(JsonElement jsonElement, Type type, JsonDeserializationContext jsonDeserializationContext) throws JsonParseException {
@@ -136,6 +330,10 @@ public class JsonUtils {
         }
     }
 
+    /**
+     * @deprecated 使用{@link ListDefault0TypeAdapterFactory}
+     */
+    @Deprecated
     public static class ListDefault0Adapter2 extends TypeAdapter<Collection<?>>{
 
         @Override
@@ -149,6 +347,10 @@ public class JsonUtils {
         }
     }
 
+    /**
+     * @deprecated 使用{@link ListDefault0TypeAdapterFactory}
+     */
+    @Deprecated
     public static class ListDefault0Adapter3 extends TypeAdapter<ArrayList<?>>{
 
         @Override
@@ -174,17 +376,6 @@ public class JsonUtils {
     }
 
 
-    private static class MyTypeAdapterFactory implements TypeAdapterFactory{
-        @Override
-        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
-            if(typeToken.getRawType() == ArrayList.class){
-                return (TypeAdapter<T>) new ListDefault0Adapter3();
-            }
-            return null;
-        }
-    }
-
-
     /**
      * @param isEnableGsonExclude 是否启用[被GsonExclude注解的字段不参与序列化、反序列化]功能,默认都参与
      * @return Gson
@@ -220,18 +411,13 @@ public class JsonUtils {
 
         //注册自定义String的适配器
         gsonBuilder.registerTypeAdapter(String.class, new StringTypeAdapter())
-                .registerTypeAdapter(Double.class, new DoubleDefault0Adapter())
-                .registerTypeAdapter(double.class, new DoubleDefault0Adapter())
-                .registerTypeAdapter(Integer.class, new IntegerDefault0Adapter())
-                .registerTypeAdapter(int.class, new IntegerDefault0Adapter())
-                .registerTypeAdapter(Long.class, new LongDefault0Adapter())
-                .registerTypeAdapter(long.class, new LongDefault0Adapter())
-                .registerTypeAdapter(List.class, new ListDefault0Adapter())
-                .registerTypeAdapter(Collection.class, new ListDefault0Adapter2())
-                .registerTypeAdapter(ArrayList.class, new ListDefault0Adapter3())
-                .registerTypeAdapterFactory(new MyTypeAdapterFactory())
-
-
+                .registerTypeAdapter(Double.class, DOUBLE_DEFAULT_0)
+                .registerTypeAdapter(double.class, DOUBLE_DEFAULT_0)
+                .registerTypeAdapter(Integer.class, INTEGER_DEFAULT_0)
+                .registerTypeAdapter(int.class, INTEGER_DEFAULT_0)
+                .registerTypeAdapter(Long.class, LONG_DEFAULT_0)
+                .registerTypeAdapter(long.class, LONG_DEFAULT_0)
+                .registerTypeAdapterFactory(new ListDefault0TypeAdapterFactory())
         ;
         return gsonBuilder.create();
     }
@@ -270,15 +456,13 @@ public class JsonUtils {
 
         //注册自定义String的适配器
         gsonBuilder.registerTypeAdapter(String.class, new StringTypeAdapter())
-                .registerTypeAdapter(Double.class, new DoubleDefault0Adapter())
-                .registerTypeAdapter(double.class, new DoubleDefault0Adapter())
-                .registerTypeAdapter(Integer.class, new IntegerDefault0Adapter())
-                .registerTypeAdapter(int.class, new IntegerDefault0Adapter())
-                .registerTypeAdapter(Long.class, new LongDefault0Adapter())
-                .registerTypeAdapter(long.class, new LongDefault0Adapter())
-                .registerTypeAdapter(List.class, new ListDefault0Adapter())
-                .registerTypeAdapter(Collection.class, new ListDefault0Adapter2())
-                .registerTypeAdapter(ArrayList.class, new ListDefault0Adapter3())
+                .registerTypeAdapter(Double.class, DOUBLE_DEFAULT_0)
+                .registerTypeAdapter(double.class, DOUBLE_DEFAULT_0)
+                .registerTypeAdapter(Integer.class, INTEGER_DEFAULT_0)
+                .registerTypeAdapter(int.class, INTEGER_DEFAULT_0)
+                .registerTypeAdapter(Long.class, LONG_DEFAULT_0)
+                .registerTypeAdapter(long.class, LONG_DEFAULT_0)
+                .registerTypeAdapterFactory(new ListDefault0TypeAdapterFactory())
         ;
         return gsonBuilder.create();
     }
@@ -401,7 +585,7 @@ public class JsonUtils {
         List<T> list;
         try {
             list = new ArrayList<>();
-            if (TextUtils.isEmpty(json)) {
+            if (json == null || json.isEmpty()) {
                 return list;
             }
 
@@ -422,7 +606,7 @@ public class JsonUtils {
     public static <T> List<T> parseJson2List(String json, Type type, boolean isEnableGsonExclude) throws JSONException {
         try {
             List<T> list = new ArrayList<>();
-            if (TextUtils.isEmpty(json)) {
+            if (json == null || json.isEmpty()) {
                 return list;
             }
 
@@ -0,0 +1,103 @@
+package com.example;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 按事件名的上限不能被分片、转义或随意的事件名绕过
+ */
+public class EventSizeLimitHandlerTest {
+
+    private static final String PADDING = "xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx";
+
+    private final EventSizeLimits limits = EventSizeLimits.parse(100, "ServerReceive=40");
+    private final EmbeddedChannel channel = new EmbeddedChannel(new EventSizeLimitHandler(limits, new MessageTracer()));
+
+    private static TextWebSocketFrame text(String value, boolean last) {
+        return new TextWebSocketFrame(last, 0, value);
+    }
+
+    private static ContinuationWebSocketFrame continuation(String value, boolean last) {
+        return new ContinuationWebSocketFrame(last, 0, value);
+    }
+
+    /**
+     * @return 下游收到的帧数
+     */
+    private int drainInbound() {
+        int count = 0;
+        WebSocketFrame frame;
+        while ((frame = channel.readInbound()) != null) {
+            ReferenceCountUtil.release(frame);
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void configuredLimitApplies() {
+        channel.writeInbound(text("42[\"ServerReceive\",\"" + PADDING + "\"]", true));
+        assertEquals(0, drainInbound());
+        channel.writeInbound(text("42[\"Other\",\"" + PADDING + "\"]", true));
+        assertEquals(1, drainInbound());
+        assertEquals(Long.valueOf(1), limits.getRejectedCounts().get("ServerReceive"));
+    }
+
+    @Test
+    public void nameOutsideFirstFragmentUsesSmallestLimit() {
+        channel.writeInbound(text("42[", false));
+        channel.writeInbound(continuation("\"ServerReceive\",\"" + PADDING + "\"]", true));
+        assertEquals(0, drainInbound());
+
+        channel.writeInbound(text("4", false));
+        channel.writeInbound(continuation("2[\"ServerReceive\",\"" + PADDING + "\"]", true));
+        assertEquals(0, drainInbound());
+
+        channel.writeInbound(text("", false));
+        channel.writeInbound(continuation("42[\"ServerReceive\",\"" + PADDING + "\"]", true));
+        assertEquals(0, drainInbound());
+        assertEquals(Long.valueOf(3), limits.getRejectedCounts().get(EventSizeLimits.UNKNOWN_EVENT));
+    }
+
+    @Test
+    public void escapedNameUsesSmallestLimit() {
+        channel.writeInbound(text("42[\"Server\\u0052eceive\",\"" + PADDING + "\"]", true));
+        assertEquals(0, drainInbound());
+        assertEquals(EventSizeLimits.UNKNOWN_EVENT, EventSizeLimitHandler.parseEventName(
+                text("42[\"Server\\u0052eceive\"]", true).content()));
+    }
+
+    @Test
+    public void smallFragmentedEventPasses() {
+        channel.writeInbound(text("42[\"Server", false));
+        channel.writeInbound(continuation("Receive\",\"a\"]", true));
+        assertEquals(2, drainInbound());
+    }
+
+    @Test
+    public void nonEventPacketUsesDefaultLimit() {
+        channel.writeInbound(text("431[\"" + PADDING + "\"]", true));
+        assertEquals(1, drainInbound());
+        channel.writeInbound(text("3", true));
+        assertEquals(1, drainInbound());
+        assertNull(EventSizeLimitHandler.parseEventName(text("3probe", true).content()));
+    }
+
+    @Test
+    public void rejectedCountsAreBounded() {
+        for (int i = 0; i < 100; i++) {
+            channel.writeInbound(text("42[\"random" + i + "\",\"" + PADDING + PADDING + "\"]", true));
+        }
+        assertEquals(0, drainInbound());
+        assertEquals(Collections.singletonMap(EventSizeLimits.DEFAULT_EVENT, 100L), limits.getRejectedCounts());
+    }
+}
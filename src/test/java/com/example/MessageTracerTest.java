@@ -0,0 +1,60 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 抽样只在事件处理方法里计数,查询参数越界时不报错
+ */
+public class MessageTracerTest {
+
+    private MessageTracer newTracer(int sampleEvery) {
+        MessageTracer tracer = new MessageTracer();
+        ReflectionTestUtils.setField(tracer, "sampleEvery", sampleEvery);
+        ReflectionTestUtils.setField(tracer, "capacity", 16);
+        tracer.init();
+        return tracer;
+    }
+
+    private static void handle(MessageTracer tracer) {
+        tracer.onReceive();
+        try {
+            tracer.onHandlerStart("ServerReceive");
+            tracer.mark(MessageTracer.ACK_START);
+            tracer.mark(MessageTracer.ACK_END);
+            tracer.onHandlerEnd();
+        } finally {
+            tracer.clearReceive();
+        }
+    }
+
+    @Test
+    public void framesWithoutHandlerAreNotCounted() throws Exception {
+        MessageTracer tracer = newTracer(2);
+        for (int i = 0; i < 5; i++) {
+            //ping等帧只经过收帧,不进入事件处理方法
+            tracer.onReceive();
+            tracer.clearReceive();
+        }
+        for (int i = 0; i < 6; i++) {
+            handle(tracer);
+            Thread.sleep(1);
+        }
+        assertEquals(3, tracer.slowest(100).size());
+    }
+
+    @Test
+    public void slowestClampsLimit() throws Exception {
+        MessageTracer tracer = newTracer(1);
+        for (int i = 0; i < 3; i++) {
+            handle(tracer);
+            Thread.sleep(1);
+        }
+        assertEquals(0, tracer.slowest(-1).size());
+        assertEquals(0, tracer.slowest(0).size());
+        assertEquals(2, tracer.slowest(2).size());
+        assertEquals(3, tracer.slowest(Integer.MAX_VALUE).size());
+    }
+}
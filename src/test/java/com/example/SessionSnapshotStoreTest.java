@@ -0,0 +1,174 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 保存、关闭、重新打开后加载,状态要与保存时一致
+ */
+public class SessionSnapshotStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private SessionSnapshotStore open(Path file) {
+        SessionSnapshotStore store = new SessionSnapshotStore();
+        ReflectionTestUtils.setField(store, "enabled", true);
+        ReflectionTestUtils.setField(store, "file", file.toString());
+        ReflectionTestUtils.setField(store, "sizeMb", 1);
+        ReflectionTestUtils.setField(store, "retentionHours", 24L);
+        ReflectionTestUtils.setField(store, "metadataKeySpec", "device");
+        store.open();
+        return store;
+    }
+
+    private static SessionState save(SessionSnapshotStore store, String uid, long seq, String... rooms) {
+        SessionState state = store.getOrCreate(uid);
+        state.lastSeq = seq;
+        state.lastSeenMillis = System.currentTimeMillis();
+        state.rooms.addAll(Arrays.asList(rooms));
+        state.metadata.put("device", "android-" + uid);
+        store.save(state);
+        return state;
+    }
+
+    private static long endPosition(Path file) throws Exception {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+            raf.seek(8);
+            return raf.readLong();
+        }
+    }
+
+    @Test
+    public void roundTrip() {
+        Path file = dir.resolve("snapshot.bin");
+        SessionSnapshotStore store = open(file);
+        save(store, "u1", 5, "room-a", "room-b");
+        SessionState u2 = save(store, "u2", 9, "房间");
+        u2.rooms.remove("房间");
+        u2.lastSeq = 10;
+        store.save(u2);
+        store.close();
+
+        SessionSnapshotStore reopened = open(file);
+        SessionState u1 = reopened.get("u1");
+        assertNotNull(u1);
+        assertEquals(5, u1.lastSeq);
+        assertEquals(new HashSet<>(Arrays.asList("room-a", "room-b")), u1.rooms);
+        assertEquals("android-u1", u1.metadata.get("device"));
+        assertEquals(10, reopened.get("u2").lastSeq);
+        assertEquals(0, reopened.get("u2").rooms.size());
+        assertNull(reopened.get("u3"));
+        reopened.close();
+    }
+
+    @Test
+    public void corruptTailIsTruncated() throws Exception {
+        Path file = dir.resolve("snapshot.bin");
+        SessionSnapshotStore store = open(file);
+        save(store, "u1", 1, "room-a");
+        save(store, "u2", 2, "room-b");
+        store.close();
+        long end = endPosition(file);
+
+        //追加一条长度正确、内容被截断的记录,并把末尾位置指到它后面
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(end);
+            raf.writeInt(7);
+            raf.writeByte(1);
+            raf.writeShort(200);
+            raf.writeInt(0);
+            raf.seek(8);
+            raf.writeLong(end + 4 + 7);
+        }
+
+        SessionSnapshotStore reopened = open(file);
+        assertEquals(1, reopened.get("u1").lastSeq);
+        assertEquals(2, reopened.get("u2").lastSeq);
+        assertEquals(new HashSet<>(Arrays.asList("room-b")), reopened.get("u2").rooms);
+        reopened.close();
+        assertEquals(end, endPosition(file));
+
+        //截断后可以继续追加
+        SessionSnapshotStore again = open(file);
+        save(again, "u3", 3, "room-c");
+        again.close();
+        SessionSnapshotStore last = open(file);
+        assertEquals(3, last.get("u3").lastSeq);
+        assertEquals(1, last.get("u1").lastSeq);
+        last.close();
+    }
+
+    @Test
+    public void compactKeepsAllStates() throws Exception {
+        Path file = dir.resolve("snapshot.bin");
+        SessionSnapshotStore store = open(file);
+        char[] name = new char[200];
+        Arrays.fill(name, 'r');
+        String room = new String(name);
+        //1MB的文件装不下这么多记录,中途会触发压缩
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < 30; i++) {
+                SessionState state = store.getOrCreate("u" + i);
+                state.lastSeq = round;
+                state.lastSeenMillis = System.currentTimeMillis();
+                state.rooms.add(room + (round % 5));
+                store.save(state);
+            }
+        }
+        store.close();
+        assertFalse(Files.exists(dir.resolve("snapshot.bin.compact")));
+
+        SessionSnapshotStore reopened = open(file);
+        for (int i = 0; i < 30; i++) {
+            SessionState state = reopened.get("u" + i);
+            assertEquals(99, state.lastSeq);
+            assertEquals(5, state.rooms.size());
+        }
+        reopened.close();
+    }
+
+    @Test
+    public void concurrentRoomChangesDoNotCorruptRecords() throws Exception {
+        Path file = dir.resolve("snapshot.bin");
+        SessionSnapshotStore store = open(file);
+        SessionState shared = save(store, "shared", 0);
+        Thread mutator = new Thread(() -> {
+            for (int i = 0; !Thread.currentThread().isInterrupted(); i++) {
+                shared.rooms.add("room-" + (i % 50));
+                shared.metadata.put("device", "d" + i);
+                shared.rooms.remove("room-" + ((i + 25) % 50));
+            }
+        });
+        mutator.start();
+        try {
+            for (int i = 0; i < 2000; i++) {
+                store.save(shared);
+                save(store, "u" + i, i);
+            }
+        } finally {
+            mutator.interrupt();
+            mutator.join();
+        }
+        store.close();
+
+        SessionSnapshotStore reopened = open(file);
+        assertNotNull(reopened.get("shared"));
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(i, reopened.get("u" + i).lastSeq);
+        }
+        reopened.close();
+    }
+}
@@ -0,0 +1,174 @@
+package com.gson;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 流式数字适配器的读取结果要与原来注册的JsonDeserializer一致,集合字段的null、""读作空集合
+ */
+@SuppressWarnings("deprecation")
+public class JsonUtilsTest {
+
+    static class Bean {
+        int i = 7;
+        long l = 7;
+        double d = 7;
+        Integer boxedI = 7;
+        Long boxedL = 7L;
+        Double boxedD = 7.0;
+    }
+
+    static class ListBean {
+        List<String> list;
+        Collection<Integer> collection;
+        ArrayList<Long> arrayList;
+    }
+
+    private final Gson gson = JsonUtils.getGson();
+
+    /**
+     * 用原来的JsonDeserializer注册的gson,作为对照
+     */
+    private final Gson legacy = new GsonBuilder()
+            .registerTypeAdapter(Double.class, new JsonUtils.DoubleDefault0Adapter())
+            .registerTypeAdapter(double.class, new JsonUtils.DoubleDefault0Adapter())
+            .registerTypeAdapter(Integer.class, new JsonUtils.IntegerDefault0Adapter())
+            .registerTypeAdapter(int.class, new JsonUtils.IntegerDefault0Adapter())
+            .registerTypeAdapter(Long.class, new JsonUtils.LongDefault0Adapter())
+            .registerTypeAdapter(long.class, new JsonUtils.LongDefault0Adapter())
+            .create();
+
+    private static String allFields(String value) {
+        return "{\"i\":" + value + ",\"l\":" + value + ",\"d\":" + value
+                + ",\"boxedI\":" + value + ",\"boxedL\":" + value + ",\"boxedD\":" + value + "}";
+    }
+
+    private void assertSameAsLegacy(String json) {
+        Bean actual = gson.fromJson(json, Bean.class);
+        Bean expected = legacy.fromJson(json, Bean.class);
+        assertEquals(expected.i, actual.i, json);
+        assertEquals(expected.l, actual.l, json);
+        assertEquals(expected.d, actual.d, json);
+        assertEquals(expected.boxedI, actual.boxedI, json);
+        assertEquals(expected.boxedL, actual.boxedL, json);
+        assertEquals(expected.boxedD, actual.boxedD, json);
+    }
+
+    @Test
+    public void nullKeepsInitializerForPrimitiveAndNullForBoxed() {
+        Bean bean = gson.fromJson(allFields("null"), Bean.class);
+        assertEquals(7, bean.i);
+        assertEquals(7L, bean.l);
+        assertEquals(7.0, bean.d);
+        assertNull(bean.boxedI);
+        assertNull(bean.boxedL);
+        assertNull(bean.boxedD);
+        assertNull(gson.fromJson("null", Integer.class));
+        assertSameAsLegacy(allFields("null"));
+    }
+
+    @Test
+    public void emptyAndNullStringReadAsZero() {
+        for (String value : new String[]{"\"\"", "\"null\""}) {
+            Bean bean = gson.fromJson(allFields(value), Bean.class);
+            assertEquals(0, bean.i);
+            assertEquals(0L, bean.l);
+            assertEquals(0.0, bean.d);
+            assertEquals(Integer.valueOf(0), bean.boxedI);
+            assertEquals(Long.valueOf(0), bean.boxedL);
+            assertEquals(Double.valueOf(0), bean.boxedD);
+            assertSameAsLegacy(allFields(value));
+        }
+    }
+
+    @Test
+    public void fractionIsTruncated() {
+        Bean bean = gson.fromJson(allFields("1.5"), Bean.class);
+        assertEquals(1, bean.i);
+        assertEquals(1L, bean.l);
+        assertEquals(1.5, bean.d);
+        assertSameAsLegacy(allFields("1.5"));
+        assertSameAsLegacy(allFields("-1.5"));
+        assertSameAsLegacy(allFields("1e3"));
+    }
+
+    @Test
+    public void outOfRangeMatchesLegacy() {
+        assertSameAsLegacy(allFields("3000000000"));
+        assertSameAsLegacy(allFields("-3000000000"));
+        assertSameAsLegacy(allFields("10000000000000000000"));
+        assertSameAsLegacy(allFields("1e400"));
+    }
+
+    @Test
+    public void invalidStringThrows() {
+        assertThrows(JsonSyntaxException.class, () -> gson.fromJson("{\"i\":\"abc\"}", Bean.class));
+        assertThrows(JsonSyntaxException.class, () -> gson.fromJson("{\"i\":\"1.5\"}", Bean.class));
+        assertThrows(JsonSyntaxException.class, () -> legacy.fromJson("{\"i\":\"1.5\"}", Bean.class));
+        assertThrows(JsonSyntaxException.class, () -> gson.fromJson("{\"l\":\"3000000000000000000000\"}", Bean.class));
+    }
+
+    @Test
+    public void writeKeepsNumbers() {
+        Bean bean = new Bean();
+        bean.boxedI = null;
+        assertEquals("{\"i\":7,\"l\":7,\"d\":7.0,\"boxedI\":null,\"boxedL\":7,\"boxedD\":7.0}", gson.toJson(bean));
+    }
+
+    private static String allLists(String value) {
+        return "{\"list\":" + value + ",\"collection\":" + value + ",\"arrayList\":" + value + "}";
+    }
+
+    @Test
+    public void nullAndEmptyStringListReadAsEmpty() {
+        for (String value : new String[]{"null", "\"\"", "\"null\""}) {
+            for (Gson g : new Gson[]{gson, JsonUtils.getGson(true)}) {
+                ListBean bean = g.fromJson(allLists(value), ListBean.class);
+                assertEquals(Collections.emptyList(), bean.list, value);
+                assertEquals(Collections.emptyList(), bean.collection, value);
+                assertEquals(new ArrayList<Long>(), bean.arrayList, value);
+            }
+        }
+    }
+
+    @Test
+    public void normalArraysRead() {
+        ListBean bean = gson.fromJson("{\"list\":[\"a\",null],\"collection\":[1,\"\",2.5],\"arrayList\":[3000000000]}",
+                ListBean.class);
+        //元素仍由对应的适配器读取:String的null读作"",int的""读作0、2.5截断为2
+        assertEquals(Arrays.asList("a", ""), bean.list);
+        assertEquals(Arrays.asList(1, 0, 2), bean.collection);
+        assertEquals(ArrayList.class, bean.arrayList.getClass());
+        assertEquals(Collections.singletonList(3000000000L), bean.arrayList);
+        assertEquals(Collections.emptyList(), gson.fromJson("{\"list\":[]}", ListBean.class).list);
+    }
+
+    @Test
+    public void nonArrayStringListThrows() {
+        assertThrows(JsonSyntaxException.class, () -> gson.fromJson("{\"list\":\"abc\"}", ListBean.class));
+    }
+
+    @Test
+    public void writeLists() {
+        ListBean bean = new ListBean();
+        bean.list = Arrays.asList("a", "b");
+        bean.collection = new ArrayList<>();
+        assertEquals("{\"list\":[\"a\",\"b\"],\"collection\":[],\"arrayList\":null}", gson.toJson(bean));
+        ListBean read = gson.fromJson(gson.toJson(bean), ListBean.class);
+        assertEquals(bean.list, read.list);
+        assertEquals(Collections.emptyList(), read.collection);
+        assertEquals(Collections.emptyList(), read.arrayList);
+    }
+}